@@ -0,0 +1,42 @@
+package ws2d.core.command;
+
+import ws2d.core.server.Server;
+import ws2d.util.Logger;
+import java.util.Map;
+
+/**
+ * Prints the number of sockets connected through each event loop.
+ * 
+ * @author Ian
+ */
+public class CommandConnections extends Command {
+    /**
+     * Constructs a new instance of <code>CommandConnections</code>.
+     */
+    public CommandConnections() {
+        super("connections", "conns");
+    }
+    
+    /**
+     * Prints the number of sockets connected through each event loop. Command
+     * format: <code>connections</code>.
+     * 
+     * @param server the current running instance of the server.
+     * @param args the arguments for the command.
+     * 
+     * @throws CommandException if an invalid state is reached or any arguments
+     * are invalid.
+     */
+    @Override
+    public void execute(Server server, String[] args) throws CommandException {
+        Map<String, Integer> counts = server.getConnectionCounts();
+        if(counts.isEmpty())
+            throw new CommandException("The HTTP server has not started.");
+        int total = 0;
+        for(Map.Entry<String, Integer> entry : counts.entrySet()) {
+            Logger.println(entry.getKey() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        Logger.println("Total: " + total);
+    }
+}
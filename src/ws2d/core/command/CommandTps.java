@@ -0,0 +1,85 @@
+package ws2d.core.command;
+
+import ws2d.core.server.Server;
+import ws2d.core.server.TickProfiler;
+import ws2d.util.LatencyHistogram;
+import ws2d.util.Logger;
+
+/**
+ * Prints the measured ticks per second of the game loop and how long each phase
+ * of a tick takes.
+ * 
+ * @author Ian
+ */
+public class CommandTps extends Command {
+    /**
+     * The format of a row of the phase table.
+     */
+    private static final String ROW_FORMAT = "%-12s %10s %10s %10s %10s";
+    
+    /**
+     * Constructs a new instance of <code>CommandTps</code>.
+     */
+    public CommandTps() {
+        super("tps", "lag");
+    }
+    
+    /**
+     * Prints the measured ticks per second, the number of overrun and dropped
+     * ticks, and the mean, median, 99th percentile and maximum duration of each
+     * tick phase since the server started or the profiler was last reset. Command
+     * format: <code>tps [reset]</code>.
+     * 
+     * @param server the current running instance of the server.
+     * @param args the arguments for the command.
+     * 
+     * @throws CommandException if an invalid state is reached or any arguments
+     * are invalid.
+     */
+    @Override
+    public void execute(Server server, String[] args) throws CommandException {
+        TickProfiler profiler = server.getProfiler();
+        if(args.length > 0) {
+            if(!"reset".equalsIgnoreCase(args[0]))
+                throw new CommandException("Usage: tps [reset]");
+            profiler.reset();
+            Logger.println("Reset the tick profiler.");
+            return;
+        }
+        LatencyHistogram ticks = profiler.getTickHistogram();
+        Logger.println(String.format("TPS: %.2f / %d", profiler.getTps(), profiler.getTargetTps()));
+        Logger.println("Ticks: " + ticks.getCount() + ", overrun: " + profiler.getOverruns() + ", dropped: " + profiler.getDroppedTicks()
+                + " (period " + format(profiler.getPeriod()) + ")");
+        Logger.println(String.format(ROW_FORMAT, "Phase", "mean", "p50", "p99", "max"));
+        for(TickProfiler.Phase phase : TickProfiler.Phase.values())
+            printRow(phase.getDisplayName(), profiler.getHistogram(phase));
+        printRow("Tick", ticks);
+    }
+    
+    /**
+     * Prints the summary of a histogram as a row of the phase table.
+     * 
+     * @param name the name of the row.
+     * @param histogram the histogram.
+     */
+    private static void printRow(String name, LatencyHistogram histogram) {
+        Logger.println(String.format(ROW_FORMAT, name, format((long)histogram.getMean()), format(histogram.getValueAtPercentile(50)),
+                format(histogram.getValueAtPercentile(99)), format(histogram.getMax())));
+    }
+    
+    /**
+     * Formats a duration with a unit that keeps it short.
+     * 
+     * @param nanos the duration in nanoseconds.
+     * @return the formatted duration.
+     */
+    private static String format(long nanos) {
+        if(nanos < 1000L)
+            return nanos + " ns";
+        if(nanos < 1000000L)
+            return String.format("%.1f us", nanos / 1e3);
+        if(nanos < 1000000000L)
+            return String.format("%.2f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+}
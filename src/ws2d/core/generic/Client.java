@@ -1,5 +1,11 @@
 package ws2d.core.generic;
 
+import ws2d.core.network.CompressionState;
+import ws2d.core.network.HandlerChain;
+import ws2d.core.network.InboundQueue;
+import ws2d.core.network.OutboundQueue;
+import ws2d.core.network.WriteMonitor;
+import ws2d.core.replication.ReplicationState;
 import ws2d.util.UniquelyIdentifiableObject;
 import io.vertx.core.http.ServerWebSocket;
 
@@ -15,22 +21,69 @@ public class Client extends UniquelyIdentifiableObject {
      * The server web socket.
      */
     private final ServerWebSocket socket;
+    /**
+     * The packets waiting to be sent to the client.
+     */
+    private final OutboundQueue outboundQueue;
+    /**
+     * The packets waiting to be handled on the game loop.
+     */
+    private final InboundQueue inboundQueue;
+    /**
+     * The client's replication state.
+     */
+    private final ReplicationState replicationState;
+    /**
+     * The client's compression state.
+     */
+    private final CompressionState compressionState;
+    /**
+     * The chain that orders the handling of the client's packets.
+     */
+    private final HandlerChain handlerChain;
+    /**
+     * The monitor of the client's socket write queue.
+     */
+    private final WriteMonitor writeMonitor;
     /**
      * Whether or not the client's connection is still valid.
      */
     private boolean connectionVerified;
     
     /**
-     * Constructs a new instance of <code>Client</code> with a server web socket.
+     * The default capacity of the inbound packet queue.
+     */
+    private static final int DEFAULT_INBOUND_CAPACITY = 256;
+    
+    /**
+     * Constructs a new instance of <code>Client</code> with a server web socket
+     * and the capacity of its inbound packet queue. This should be called on the
+     * event loop of the socket.
      * 
      * @param socket the server web socket.
+     * @param inboundCapacity the maximum number of packets waiting to be handled.
      */
-    public Client(ServerWebSocket socket) {
+    public Client(ServerWebSocket socket, int inboundCapacity) {
         super();
         this.socket = socket;
+        this.outboundQueue = new OutboundQueue();
+        this.inboundQueue = new InboundQueue(inboundCapacity);
+        this.replicationState = new ReplicationState();
+        this.compressionState = new CompressionState();
+        this.handlerChain = new HandlerChain();
+        this.writeMonitor = new WriteMonitor(socket);
         this.connectionVerified = true;
     }
     
+    /**
+     * Constructs a new instance of <code>Client</code> with a server web socket.
+     * 
+     * @param socket the server web socket.
+     */
+    public Client(ServerWebSocket socket) {
+        this(socket, DEFAULT_INBOUND_CAPACITY);
+    }
+    
     /**
      * Returns the server web socket.
      * 
@@ -40,6 +93,63 @@ public class Client extends UniquelyIdentifiableObject {
         return socket;
     }
     
+    /**
+     * Returns the queue of packets waiting to be sent to the client.
+     * 
+     * @return the client's outbound queue.
+     */
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+    
+    /**
+     * Returns the queue of packets waiting to be handled on the game loop.
+     * 
+     * @return the client's inbound queue.
+     */
+    public InboundQueue getInboundQueue() {
+        return inboundQueue;
+    }
+    
+    /**
+     * Returns the client's replication state, which records the latest snapshot
+     * the client has acknowledged.
+     * 
+     * @return the client's replication state.
+     */
+    public ReplicationState getReplicationState() {
+        return replicationState;
+    }
+    
+    /**
+     * Returns the client's compression state, which records how well the frames
+     * sent to the client have compressed.
+     * 
+     * @return the client's compression state.
+     */
+    public CompressionState getCompressionState() {
+        return compressionState;
+    }
+    
+    /**
+     * Returns the chain that orders the handling of the client's packets.
+     * 
+     * @return the client's handler chain.
+     */
+    public HandlerChain getHandlerChain() {
+        return handlerChain;
+    }
+    
+    /**
+     * Returns the monitor of the client's socket write queue, which tells whether
+     * or not the client is keeping up with the packets sent to it.
+     * 
+     * @return the client's write monitor.
+     */
+    public WriteMonitor getWriteMonitor() {
+        return writeMonitor;
+    }
+    
     /**
      * Updates the verification state of this client to the specified value.
      * 
@@ -0,0 +1,31 @@
+package ws2d.core.interest;
+
+import ws2d.core.generic.Client;
+
+/**
+ * Receives notifications when objects enter or leave the view of a client. The
+ * notifications are sent on the game loop thread while the interest manager is
+ * ticked, once it has finished updating its index, so listeners may add and
+ * remove objects and views.
+ * 
+ * @author Ian
+ */
+public interface InterestListener {
+    /**
+     * Called when an object enters the view of a client, including when the object
+     * is added or the client's view is first set.
+     * 
+     * @param client the client.
+     * @param object the object that entered the client's view.
+     */
+    void onEnter(Client client, Positioned object);
+    
+    /**
+     * Called when an object leaves the view of a client, including when the object
+     * is removed. This is not called when the client disconnects.
+     * 
+     * @param client the client.
+     * @param object the object that left the client's view.
+     */
+    void onLeave(Client client, Positioned object);
+}
@@ -0,0 +1,539 @@
+package ws2d.core.interest;
+
+import ws2d.core.generic.Client;
+import ws2d.core.network.Packet;
+import ws2d.core.physics.Vector;
+import ws2d.core.server.Server;
+import ws2d.init.Config;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which positioned objects each client can see, so that updates about an
+ * object are only sent to the clients near it. Objects are indexed in a uniform
+ * grid of square cells, and each client's view region is registered in every cell
+ * it overlaps, so finding the clients interested in an object or the objects in
+ * a client's view only visits nearby cells.
+ * <p>
+ * Object positions are re-read once per tick, at which point listeners are told
+ * about every object that entered or left each client's view. Notifications are
+ * collected while the index is being walked and sent once it is consistent again,
+ * so listeners may change the manager, for example by removing an object that
+ * left a view. All methods must be called on the game loop thread.
+ * 
+ * @author Ian
+ */
+public class InterestManager {
+    /**
+     * The server whose clients are tracked.
+     */
+    private final Server server;
+    /**
+     * The width and height of each grid cell.
+     */
+    private final double cellSize;
+    /**
+     * The grid cells that contain objects or views, by cell key.
+     */
+    private final Map<Long, Cell> cells;
+    /**
+     * The indexed objects.
+     */
+    private final Map<Positioned, Entry> entries;
+    /**
+     * The view of each client.
+     */
+    private final Map<Client, View> views;
+    /**
+     * The listeners notified when objects enter or leave a client's view.
+     */
+    private final List<InterestListener> listeners;
+    /**
+     * The notifications waiting to be sent to the listeners.
+     */
+    private final List<Notification> pending;
+    /**
+     * Whether or not the pending notifications are being sent.
+     */
+    private boolean notifying;
+    
+    /**
+     * Constructs a new instance of <code>InterestManager</code> for the specified
+     * server and configuration.
+     * 
+     * @param server the server whose clients are tracked.
+     * @param config the configuration of this Ws2D instance.
+     */
+    public InterestManager(Server server, Config config) {
+        this.server = server;
+        this.cellSize = config.getInterestCellSize();
+        this.cells = new HashMap<>();
+        this.entries = new IdentityHashMap<>();
+        this.views = new IdentityHashMap<>();
+        this.listeners = new ArrayList<>();
+        this.pending = new ArrayList<>();
+        this.notifying = false;
+    }
+    
+    /**
+     * Adds a listener that is notified when objects enter or leave a client's view.
+     * 
+     * @param listener the listener to add.
+     */
+    public void addListener(InterestListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener.
+     * 
+     * @param listener the listener to remove.
+     */
+    public void removeListener(InterestListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Starts indexing an object. The object enters the view of the clients that
+     * can see it during the next tick.
+     * 
+     * @param object the object to index.
+     */
+    public void add(Positioned object) {
+        if(entries.containsKey(object))
+            return;
+        Entry entry = new Entry(object, keyOf(object.getPosition()));
+        entries.put(object, entry);
+        cell(entry.cell).objects.add(object);
+    }
+    
+    /**
+     * Stops indexing an object. The object immediately leaves the view of every
+     * client that could see it.
+     * 
+     * @param object the object to remove.
+     */
+    public void remove(Positioned object) {
+        Entry entry = entries.remove(object);
+        if(entry == null)
+            return;
+        Cell cell = cells.get(entry.cell);
+        cell.objects.remove(object);
+        prune(entry.cell, cell);
+        for(View view : views.values()) {
+            if(view.visible.remove(object) != null)
+                pending.add(new Notification(view.client, object, false));
+        }
+        notifyListeners();
+    }
+    
+    /**
+     * Sets the region of the world that a client can see, which is the rectangle
+     * centered on a point with the specified half extents. Changes to the objects
+     * in the client's view are reported during the next tick.
+     * 
+     * @param client the client.
+     * @param center the center of the view.
+     * @param halfSize the distance from the center to the edges of the view along
+     * each axis.
+     */
+    public void setView(Client client, Vector center, Vector halfSize) {
+        View view = views.get(client);
+        if(view == null) {
+            view = new View(client);
+            views.put(client, view);
+        }else
+            unregister(view);
+        view.minX = center.x - halfSize.x;
+        view.minY = center.y - halfSize.y;
+        view.maxX = center.x + halfSize.x;
+        view.maxY = center.y + halfSize.y;
+        view.cellMinX = cellOf(view.minX);
+        view.cellMinY = cellOf(view.minY);
+        view.cellMaxX = cellOf(view.maxX);
+        view.cellMaxY = cellOf(view.maxY);
+        for(int cx = view.cellMinX;cx <= view.cellMaxX;++ cx) {
+            for(int cy = view.cellMinY;cy <= view.cellMaxY;++ cy)
+                cell(key(cx, cy)).views.add(view);
+        }
+    }
+    
+    /**
+     * Removes a client's view without notifying listeners. Views of clients that
+     * have disconnected are also removed automatically during the next tick.
+     * 
+     * @param client the client.
+     */
+    public void removeView(Client client) {
+        View view = views.remove(client);
+        if(view != null)
+            unregister(view);
+    }
+    
+    /**
+     * Returns the objects that a client can currently see, as of the last tick.
+     * 
+     * @param client the client.
+     * @return an unmodifiable set of the visible objects.
+     */
+    public Set<Positioned> getVisible(Client client) {
+        View view = views.get(client);
+        return view == null ? Collections.emptySet() : Collections.unmodifiableSet(view.visible.keySet());
+    }
+    
+    /**
+     * Returns the clients whose view contains the specified position.
+     * 
+     * @param position the position.
+     * @return a new list of the interested clients.
+     */
+    public List<Client> getInterested(Vector position) {
+        List<Client> interested = new ArrayList<>();
+        Cell cell = cells.get(keyOf(position));
+        if(cell != null) {
+            for(View view : cell.views) {
+                if(view.contains(position))
+                    interested.add(view.client);
+            }
+        }
+        return interested;
+    }
+    
+    /**
+     * Returns the clients whose view contains the specified object.
+     * 
+     * @param object the object.
+     * @return a new list of the interested clients.
+     */
+    public List<Client> getInterested(Positioned object) {
+        return getInterested(object.getPosition());
+    }
+    
+    /**
+     * Sends a packet to every client whose view contains the specified object. The
+     * packet is serialized once.
+     * 
+     * @param packet the packet to send.
+     * @param object the object the packet is about.
+     */
+    public void send(Packet packet, Positioned object) {
+        List<Client> interested = getInterested(object);
+        if(!interested.isEmpty())
+            server.getNetworkHandler().multicast(packet, interested);
+    }
+    
+    /**
+     * Sends a packet to every client whose view contains the specified object,
+     * replacing any packet of the same type about the same object that is still
+     * waiting to be sent to each client. This suits packets that carry the latest
+     * state of an object, such as its position.
+     * 
+     * @param packet the packet to send.
+     * @param key the conflation key, such as the ID of the object.
+     * @param object the object the packet is about.
+     */
+    public void sendConflated(Packet packet, int key, Positioned object) {
+        List<Client> interested = getInterested(object);
+        if(!interested.isEmpty())
+            server.getNetworkHandler().multicastConflated(packet, key, interested);
+    }
+    
+    /**
+     * Moves every object that has changed cells, removes the views of disconnected
+     * clients, and notifies listeners of the objects that entered or left each
+     * view. This is called by the server once per tick.
+     */
+    public void tick() {
+        for(Entry entry : entries.values()) {
+            long key = keyOf(entry.object.getPosition());
+            if(key != entry.cell) {
+                Cell old = cells.get(entry.cell);
+                old.objects.remove(entry.object);
+                prune(entry.cell, old);
+                cell(key).objects.add(entry.object);
+                entry.cell = key;
+            }
+        }
+        Iterator<View> it = views.values().iterator();
+        while(it.hasNext()) {
+            View view = it.next();
+            if(server.getClient(view.client.getUid()) != view.client) {
+                unregister(view);
+                it.remove();
+                continue;
+            }
+            refresh(view);
+        }
+        notifyListeners();
+    }
+    
+    /**
+     * Recomputes the objects in a view and queues notifications of the differences.
+     * 
+     * @param view the view.
+     */
+    private void refresh(View view) {
+        Map<Positioned, Boolean> next = view.next;
+        for(int cx = view.cellMinX;cx <= view.cellMaxX;++ cx) {
+            for(int cy = view.cellMinY;cy <= view.cellMaxY;++ cy) {
+                Cell cell = cells.get(key(cx, cy));
+                if(cell == null)
+                    continue;
+                for(Positioned object : cell.objects) {
+                    if(view.contains(object.getPosition()))
+                        next.put(object, Boolean.TRUE);
+                }
+            }
+        }
+        for(Positioned object : view.visible.keySet()) {
+            if(!next.containsKey(object))
+                pending.add(new Notification(view.client, object, false));
+        }
+        for(Positioned object : next.keySet()) {
+            if(!view.visible.containsKey(object))
+                pending.add(new Notification(view.client, object, true));
+        }
+        view.swap();
+    }
+    
+    /**
+     * Removes a view from every cell it is registered in.
+     * 
+     * @param view the view.
+     */
+    private void unregister(View view) {
+        for(int cx = view.cellMinX;cx <= view.cellMaxX;++ cx) {
+            for(int cy = view.cellMinY;cy <= view.cellMaxY;++ cy) {
+                long key = key(cx, cy);
+                Cell cell = cells.get(key);
+                if(cell != null) {
+                    cell.views.remove(view);
+                    prune(key, cell);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the cell with the specified key, creating it if it does not exist.
+     * 
+     * @param key the cell key.
+     * @return the cell.
+     */
+    private Cell cell(long key) {
+        Cell cell = cells.get(key);
+        if(cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+    
+    /**
+     * Discards a cell once it no longer contains any objects or views.
+     * 
+     * @param key the cell key.
+     * @param cell the cell.
+     */
+    private void prune(long key, Cell cell) {
+        if(cell.objects.isEmpty() && cell.views.isEmpty())
+            cells.remove(key);
+    }
+    
+    /**
+     * Sends the pending notifications to every listener. Notifications queued by a
+     * listener while this runs are sent after the ones before them, rather than
+     * from within the listener.
+     */
+    private void notifyListeners() {
+        if(notifying)
+            return;
+        notifying = true;
+        try {
+            for(int i = 0;i < pending.size();++ i) {
+                Notification notification = pending.get(i);
+                for(int j = 0;j < listeners.size();++ j) {
+                    if(notification.enter)
+                        listeners.get(j).onEnter(notification.client, notification.object);
+                    else
+                        listeners.get(j).onLeave(notification.client, notification.object);
+                }
+            }
+        }finally {
+            pending.clear();
+            notifying = false;
+        }
+    }
+    
+    /**
+     * Returns the index of the cell containing the specified coordinate.
+     * 
+     * @param coordinate the coordinate.
+     * @return the cell index along the coordinate's axis.
+     */
+    private int cellOf(double coordinate) {
+        return (int)Math.floor(coordinate / cellSize);
+    }
+    
+    /**
+     * Returns the key of the cell containing the specified position.
+     * 
+     * @param position the position.
+     * @return the cell key.
+     */
+    private long keyOf(Vector position) {
+        return key(cellOf(position.x), cellOf(position.y));
+    }
+    
+    /**
+     * Packs the indices of a cell into a single key.
+     * 
+     * @param cx the cell index along the x axis.
+     * @param cy the cell index along the y axis.
+     * @return the cell key.
+     */
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * A grid cell, which holds the objects inside it and the views that overlap it.
+     */
+    private static final class Cell {
+        /**
+         * The objects inside the cell.
+         */
+        final List<Positioned> objects = new ArrayList<>();
+        /**
+         * The views that overlap the cell.
+         */
+        final List<View> views = new ArrayList<>();
+    }
+    
+    /**
+     * A notification that an object entered or left a client's view.
+     */
+    private static final class Notification {
+        /**
+         * The client.
+         */
+        final Client client;
+        /**
+         * The object.
+         */
+        final Positioned object;
+        /**
+         * Whether the object entered, rather than left, the client's view.
+         */
+        final boolean enter;
+        
+        /**
+         * Constructs a new instance of <code>Notification</code> for the specified
+         * client and object.
+         * 
+         * @param client the client.
+         * @param object the object.
+         * @param enter whether the object entered, rather than left, the client's view.
+         */
+        Notification(Client client, Positioned object, boolean enter) {
+            this.client = client;
+            this.object = object;
+            this.enter = enter;
+        }
+    }
+    
+    /**
+     * An indexed object and the key of the cell it is in.
+     */
+    private static final class Entry {
+        /**
+         * The object.
+         */
+        final Positioned object;
+        /**
+         * The key of the cell the object is in.
+         */
+        long cell;
+        
+        /**
+         * Constructs a new instance of <code>Entry</code> for an object in the specified
+         * cell.
+         * 
+         * @param object the object.
+         * @param cell the key of the cell the object is in.
+         */
+        Entry(Positioned object, long cell) {
+            this.object = object;
+            this.cell = cell;
+        }
+    }
+    
+    /**
+     * The view region of a client and the objects that were inside it at the last
+     * tick.
+     */
+    private static final class View {
+        /**
+         * The client.
+         */
+        final Client client;
+        /**
+         * The bounds of the view.
+         */
+        double minX, minY, maxX, maxY;
+        /**
+         * The range of cells the view overlaps.
+         */
+        int cellMinX, cellMinY, cellMaxX, cellMaxY;
+        /**
+         * The objects that were visible at the last tick.
+         */
+        Map<Positioned, Boolean> visible;
+        /**
+         * The objects being collected for the current tick.
+         */
+        Map<Positioned, Boolean> next;
+        
+        /**
+         * Constructs a new instance of <code>View</code> for the specified client with
+         * an empty region.
+         * 
+         * @param client the client.
+         */
+        View(Client client) {
+            this.client = client;
+            this.cellMinX = this.cellMinY = 0;
+            this.cellMaxX = this.cellMaxY = -1;
+            this.visible = new IdentityHashMap<>();
+            this.next = new IdentityHashMap<>();
+        }
+        
+        /**
+         * Returns whether or not a position is inside the view.
+         * 
+         * @param position the position.
+         * @return <code>true</code>, if the position is inside the view, <code>false</code>
+         * otherwise.
+         */
+        boolean contains(Vector position) {
+            return position.x >= minX && position.x <= maxX && position.y >= minY && position.y <= maxY;
+        }
+        
+        /**
+         * Replaces the visible objects with the objects collected for the current
+         * tick, reusing the old collection for the next tick.
+         */
+        void swap() {
+            Map<Positioned, Boolean> old = visible;
+            visible = next;
+            next = old;
+            next.clear();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ws2d.core.interest;
+
+import ws2d.core.physics.Vector;
+
+/**
+ * Describes a game object that has a position in the world, which allows it to
+ * be indexed by the <code>InterestManager</code>.
+ * 
+ * @author Ian
+ */
+public interface Positioned {
+    /**
+     * Returns the current position of this object.
+     * 
+     * @return the position of this object.
+     */
+    Vector getPosition();
+}
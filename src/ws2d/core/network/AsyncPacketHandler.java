@@ -0,0 +1,30 @@
+package ws2d.core.network;
+
+import ws2d.core.generic.Client;
+import ws2d.core.server.Server;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Defines the protocol for handling packets whose response is not available as
+ * soon as the handler returns. Packets from the same client are not handled until
+ * the stage returned for the previous packet has completed, so responses are sent
+ * in the order the packets were received.
+ * 
+ * @author Ian
+ * @param <T> the packet type.
+ */
+@FunctionalInterface
+public interface AsyncPacketHandler<T extends Packet> {
+    /**
+     * The method for handing a packet. The returned stage may complete with
+     * <code>null</code> if there is no packet to return. Pooled packets are only
+     * released once the stage has completed.
+     * 
+     * @param server the current running server instance.
+     * @param sender the client who sent the packet.
+     * @param msg the packet that was sent.
+     * @return a stage that completes with the response packet if there is one,
+     * <code>null</code> otherwise.
+     */
+    CompletionStage<Packet> onMessage(Server server, Client sender, T msg);
+}
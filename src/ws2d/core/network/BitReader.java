@@ -0,0 +1,209 @@
+package ws2d.core.network;
+
+import ws2d.core.physics.Vector;
+
+/**
+ * Reads values written by a <code>BitWriter</code> from a <code>PacketReader</code>.
+ * Bytes are taken from the packet reader only when their bits are needed, so once
+ * a packet has finished reading bits, {@link #align()} skips the rest of the current
+ * byte and byte-aligned values can be read from the packet reader again.
+ * 
+ * @author Ian
+ * @see BitWriter
+ */
+public final class BitReader {
+    /**
+     * The packet reader that bytes are read from.
+     */
+    private final PacketReader reader;
+    /**
+     * The bits that have been read but not consumed, in the lowest bits.
+     */
+    private long bits;
+    /**
+     * The number of bits that have been read but not consumed.
+     */
+    private int count;
+    
+    /**
+     * The largest number of groups in a variable length long.
+     */
+    private static final int MAX_VAR_LONG_GROUPS = 10;
+    
+    /**
+     * Constructs a new instance of <code>BitReader</code> that reads from the specified
+     * packet reader.
+     * 
+     * @param reader the packet reader.
+     */
+    BitReader(PacketReader reader) {
+        this.reader = reader;
+        this.bits = 0;
+        this.count = 0;
+    }
+    
+    /**
+     * Discards any bits that have not been consumed.
+     */
+    void reset() {
+        bits = 0;
+        count = 0;
+    }
+    
+    /**
+     * Reads a value of the specified number of bits.
+     * 
+     * @param length the number of bits to read, from <code>0</code> to <code>64</code>.
+     * @return the value, in the lowest bits.
+     */
+    public long readBits(int length) {
+        if(length < 0 || length > 64)
+            throw new IllegalArgumentException("Invalid bit length: " + length);
+        if(length > 32) {
+            long high = readBits(length - 32);
+            return (high << 32) | readBits(32);
+        }
+        while(count < length) {
+            bits = (bits << 8) | reader.readUnsignedByte();
+            count += 8;
+        }
+        count -= length;
+        return (bits >>> count) & BitWriter.mask(length);
+    }
+    
+    /**
+     * Reads a boolean from a single bit.
+     * 
+     * @return the boolean read.
+     */
+    public boolean readBoolean() {
+        return readBits(1) != 0;
+    }
+    
+    /**
+     * Reads an unsigned variable length integer.
+     * 
+     * @return the integer read.
+     * @see BitWriter#writeVarInt(int)
+     */
+    public int readVarInt() {
+        return (int)readVarLong();
+    }
+    
+    /**
+     * Reads an unsigned variable length long.
+     * 
+     * @return the long read.
+     * @throws IndexOutOfBoundsException if the value is longer than a long can be.
+     * @see BitWriter#writeVarLong(long)
+     */
+    public long readVarLong() {
+        long value = 0;
+        for(int i = 0;i < MAX_VAR_LONG_GROUPS;++ i) {
+            long group = readBits(8);
+            value |= (group & 0x7F) << (7 * i);
+            if((group & 0x80) == 0)
+                return value;
+        }
+        throw new IndexOutOfBoundsException("Variable length long is too long.");
+    }
+    
+    /**
+     * Reads a signed variable length integer.
+     * 
+     * @return the integer read.
+     * @see BitWriter#writeSignedVarInt(int)
+     */
+    public int readSignedVarInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Reads a signed variable length long.
+     * 
+     * @return the long read.
+     * @see BitWriter#writeSignedVarLong(long)
+     */
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Reads an integer in a known range.
+     * 
+     * @param min the smallest value in the range.
+     * @param max the largest value in the range.
+     * @return the integer read.
+     * @see BitWriter#writeRanged(int, int, int)
+     */
+    public int readRanged(int min, int max) {
+        return (int)(min + readBits(BitWriter.bitsFor(min, max)));
+    }
+    
+    /**
+     * Reads a quantized number in a known range.
+     * 
+     * @param min the smallest value in the range.
+     * @param max the largest value in the range.
+     * @param length the number of bits the number was written with.
+     * @return the number read.
+     * @see BitWriter#writeQuantized(double, double, double, int)
+     */
+    public double readQuantized(double min, double max, int length) {
+        if(length < 1 || length > 32)
+            throw new IllegalArgumentException("Invalid bit length: " + length);
+        return min + readBits(length) * (max - min) / BitWriter.mask(length);
+    }
+    
+    /**
+     * Reads a number rounded to a fixed precision.
+     * 
+     * @param precision the size of each step.
+     * @return the number read.
+     * @see BitWriter#writeFixed(double, double)
+     */
+    public double readFixed(double precision) {
+        return readSignedVarLong() * precision;
+    }
+    
+    /**
+     * Reads a vector with each component rounded to a fixed precision into an
+     * existing vector.
+     * 
+     * @param dest the vector to read into.
+     * @param precision the size of each step.
+     * @return the destination vector.
+     * @see BitWriter#writeVector(Vector, double)
+     */
+    public Vector readVector(Vector dest, double precision) {
+        dest.x = readFixed(precision);
+        dest.y = readFixed(precision);
+        return dest;
+    }
+    
+    /**
+     * Reads a vector whose components were quantized over a known range into an
+     * existing vector.
+     * 
+     * @param dest the vector to read into.
+     * @param min the smallest value of each component.
+     * @param max the largest value of each component.
+     * @param length the number of bits for each component.
+     * @return the destination vector.
+     * @see BitWriter#writeVector(Vector, double, double, int)
+     */
+    public Vector readVector(Vector dest, double min, double max, int length) {
+        dest.x = readQuantized(min, max, length);
+        dest.y = readQuantized(min, max, length);
+        return dest;
+    }
+    
+    /**
+     * Skips the remaining bits of the current byte.
+     */
+    public void align() {
+        reset();
+    }
+}
@@ -0,0 +1,231 @@
+package ws2d.core.network;
+
+import ws2d.core.physics.Vector;
+
+/**
+ * Writes values that are not a whole number of bytes to a <code>PacketWriter</code>.
+ * Bits are written starting at the most significant bit of each byte, and a byte
+ * is passed to the packet writer as soon as it is full. Once a packet has finished
+ * writing bits, {@link #flush()} pads the last byte with zeros so that byte-aligned
+ * values can follow; the network handler also flushes after a packet is serialized.
+ * <p>
+ * Besides raw bit fields this class supports variable length integers, which use
+ * seven bits per group plus a continuation bit, integers in a known range, which
+ * use only as many bits as the range needs, and floating point numbers quantized
+ * either to a number of bits over a range or to a fixed precision.
+ * 
+ * @author Ian
+ */
+public final class BitWriter {
+    /**
+     * The packet writer that full bytes are written to.
+     */
+    private final PacketWriter writer;
+    /**
+     * The bits that have not been written yet, in the lowest bits.
+     */
+    private long bits;
+    /**
+     * The number of bits that have not been written yet.
+     */
+    private int count;
+    
+    /**
+     * Constructs a new instance of <code>BitWriter</code> that writes to the specified
+     * packet writer.
+     * 
+     * @param writer the packet writer.
+     */
+    BitWriter(PacketWriter writer) {
+        this.writer = writer;
+        this.bits = 0;
+        this.count = 0;
+    }
+    
+    /**
+     * Discards any bits that have not been written.
+     */
+    void reset() {
+        bits = 0;
+        count = 0;
+    }
+    
+    /**
+     * Writes the lowest bits of a value.
+     * 
+     * @param value the value.
+     * @param length the number of bits to write, from <code>0</code> to <code>64</code>.
+     */
+    public void writeBits(long value, int length) {
+        if(length < 0 || length > 64)
+            throw new IllegalArgumentException("Invalid bit length: " + length);
+        if(length > 32) {
+            writeBits(value >>> 32, length - 32);
+            length = 32;
+        }
+        bits = (bits << length) | (value & mask(length));
+        count += length;
+        while(count >= 8) {
+            count -= 8;
+            writer.writeByte((int)(bits >>> count));
+        }
+    }
+    
+    /**
+     * Writes a boolean as a single bit.
+     * 
+     * @param b the boolean to write.
+     */
+    public void writeBoolean(boolean b) {
+        writeBits(b ? 1 : 0, 1);
+    }
+    
+    /**
+     * Writes an unsigned variable length integer. Values below <code>128</code>
+     * take eight bits, and each further seven bits of magnitude take another eight.
+     * Negative values take forty bits; use {@link #writeSignedVarInt(int)} for
+     * values that may be negative.
+     * 
+     * @param value the value to write.
+     */
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Writes an unsigned variable length long.
+     * 
+     * @param value the value to write.
+     * @see #writeVarInt(int)
+     */
+    public void writeVarLong(long value) {
+        while((value & ~0x7FL) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+    
+    /**
+     * Writes a signed variable length integer using zigzag encoding, so that values
+     * close to zero are short regardless of their sign.
+     * 
+     * @param value the value to write.
+     */
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+    
+    /**
+     * Writes a signed variable length long using zigzag encoding.
+     * 
+     * @param value the value to write.
+     * @see #writeSignedVarInt(int)
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+    
+    /**
+     * Writes an integer in a known range using the fewest bits that can hold every
+     * value in the range.
+     * 
+     * @param value the value to write.
+     * @param min the smallest value in the range.
+     * @param max the largest value in the range.
+     * @throws IllegalArgumentException if the value is outside of the range.
+     */
+    public void writeRanged(int value, int min, int max) {
+        if(value < min || value > max)
+            throw new IllegalArgumentException("Value " + value + " is outside of the range [" + min + ", " + max + "].");
+        writeBits((long)value - min, bitsFor(min, max));
+    }
+    
+    /**
+     * Writes a number in a known range quantized to the specified number of bits.
+     * Values outside of the range are clamped to it. The largest error is half of
+     * <code>(max - min) / (2<sup>bits</sup> - 1)</code>.
+     * 
+     * @param value the value to write.
+     * @param min the smallest value in the range.
+     * @param max the largest value in the range.
+     * @param length the number of bits to write, from <code>1</code> to <code>32</code>.
+     */
+    public void writeQuantized(double value, double min, double max, int length) {
+        if(length < 1 || length > 32)
+            throw new IllegalArgumentException("Invalid bit length: " + length);
+        double clamped = Math.max(min, Math.min(max, value));
+        long steps = mask(length);
+        writeBits(Math.round((clamped - min) / (max - min) * steps), length);
+    }
+    
+    /**
+     * Writes a number rounded to a fixed precision, as a signed variable length
+     * number of steps. For example, a precision of <code>0.01</code> writes a
+     * coordinate of <code>12.3456</code> as <code>1235</code>, which takes sixteen
+     * bits.
+     * 
+     * @param value the value to write.
+     * @param precision the size of each step.
+     */
+    public void writeFixed(double value, double precision) {
+        writeSignedVarLong(Math.round(value / precision));
+    }
+    
+    /**
+     * Writes a vector with each component rounded to a fixed precision.
+     * 
+     * @param vector the vector to write.
+     * @param precision the size of each step.
+     * @see #writeFixed(double, double)
+     */
+    public void writeVector(Vector vector, double precision) {
+        writeFixed(vector.x, precision);
+        writeFixed(vector.y, precision);
+    }
+    
+    /**
+     * Writes a vector whose components lie in a known range, with each component
+     * quantized to the specified number of bits.
+     * 
+     * @param vector the vector to write.
+     * @param min the smallest value of each component.
+     * @param max the largest value of each component.
+     * @param length the number of bits for each component.
+     * @see #writeQuantized(double, double, double, int)
+     */
+    public void writeVector(Vector vector, double min, double max, int length) {
+        writeQuantized(vector.x, min, max, length);
+        writeQuantized(vector.y, min, max, length);
+    }
+    
+    /**
+     * Writes any remaining bits, padding the last byte with zeros.
+     */
+    public void flush() {
+        if(count > 0)
+            writer.writeByte((int)(bits << (8 - count)));
+        reset();
+    }
+    
+    /**
+     * Returns the number of bits needed to hold every value in a range.
+     * 
+     * @param min the smallest value in the range.
+     * @param max the largest value in the range.
+     * @return the number of bits.
+     */
+    static int bitsFor(int min, int max) {
+        return 64 - Long.numberOfLeadingZeros((long)max - min);
+    }
+    
+    /**
+     * Returns a mask of the specified number of lowest bits.
+     * 
+     * @param length the number of bits.
+     * @return the mask.
+     */
+    static long mask(int length) {
+        return length == 64 ? -1L : (1L << length) - 1;
+    }
+}
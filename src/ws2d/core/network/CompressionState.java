@@ -0,0 +1,110 @@
+package ws2d.core.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * The compression state of a single client. This records how many bytes were
+ * written to the client before and after compression, and holds the client's
+ * compressor when context takeover is enabled. Frames are compressed and written
+ * while holding this object's lock so that they reach the client in the order
+ * they were compressed.
+ * 
+ * @author Ian
+ */
+public final class CompressionState {
+    /**
+     * The number of bytes in the frames sent to the client before compression.
+     */
+    private final AtomicLong rawBytes;
+    /**
+     * The number of bytes actually written to the client.
+     */
+    private final AtomicLong sentBytes;
+    /**
+     * The client's compressor, or <code>null</code> if one has not been created.
+     */
+    private Deflater deflater;
+    /**
+     * Whether or not the client has disconnected.
+     */
+    private boolean closed;
+    
+    /**
+     * Constructs a new instance of <code>CompressionState</code> for a client that
+     * has not been sent anything.
+     */
+    public CompressionState() {
+        this.rawBytes = new AtomicLong();
+        this.sentBytes = new AtomicLong();
+        this.deflater = null;
+        this.closed = false;
+    }
+    
+    /**
+     * Returns the client's compressor for context takeover, creating it if needed.
+     * 
+     * @param level the compression level.
+     * @param dictionary the preset dictionary, or <code>null</code>.
+     * @return the compressor, or <code>null</code> if the client has disconnected.
+     */
+    Deflater getDeflater(int level, byte[] dictionary) {
+        if(deflater == null && !closed) {
+            deflater = new Deflater(level, true);
+            if(dictionary != null)
+                deflater.setDictionary(dictionary);
+        }
+        return deflater;
+    }
+    
+    /**
+     * Records a frame that was written to the client.
+     * 
+     * @param raw the size of the frame before compression.
+     * @param sent the size of the frame that was written.
+     */
+    void record(int raw, int sent) {
+        rawBytes.addAndGet(raw);
+        sentBytes.addAndGet(sent);
+    }
+    
+    /**
+     * Releases the client's compressor.
+     */
+    public synchronized void close() {
+        closed = true;
+        if(deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+    
+    /**
+     * Returns the number of bytes in the frames sent to the client before compression.
+     * 
+     * @return the number of uncompressed bytes.
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+    
+    /**
+     * Returns the number of bytes actually written to the client.
+     * 
+     * @return the number of bytes written.
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+    
+    /**
+     * Returns the ratio of the bytes written to the client to the bytes before
+     * compression. Lower values mean better compression.
+     * 
+     * @return the compression ratio, or <code>1</code> if nothing has been sent.
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytes.get();
+        return raw == 0 ? 1.0 : (double)sentBytes.get() / raw;
+    }
+}
@@ -0,0 +1,173 @@
+package ws2d.core.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a preset compression dictionary from samples of real traffic. Short
+ * frames compress poorly on their own because DEFLATE has no history to refer
+ * back to, so a dictionary made of byte sequences that are common in the game's
+ * packets gives every frame that history up front.
+ * <p>
+ * Samples are split into fixed-size segments, and each segment is scored by how
+ * often its short substrings appear across all samples. The best segments are
+ * chosen until the dictionary is full, skipping substrings that were already
+ * covered, and the best segments are placed at the end of the dictionary where
+ * they are cheapest to refer to. All methods of this class are thread safe.
+ * 
+ * @author Ian
+ */
+public final class DictionaryBuilder {
+    /**
+     * The collected samples.
+     */
+    private final List<byte[]> samples;
+    /**
+     * The maximum total size of the collected samples.
+     */
+    private final int maxSampleBytes;
+    /**
+     * The total size of the collected samples.
+     */
+    private int sampleBytes;
+    
+    /**
+     * The length of the substrings that are counted.
+     */
+    private static final int GRAM = 6;
+    /**
+     * The length of the segments that are chosen for the dictionary.
+     */
+    private static final int SEGMENT = 32;
+    /**
+     * The largest dictionary DEFLATE can make use of.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32768;
+    
+    /**
+     * Constructs a new instance of <code>DictionaryBuilder</code> that collects up
+     * to the specified number of bytes of samples.
+     * 
+     * @param maxSampleBytes the maximum total size of the collected samples.
+     */
+    public DictionaryBuilder(int maxSampleBytes) {
+        this.samples = new ArrayList<>();
+        this.maxSampleBytes = maxSampleBytes;
+        this.sampleBytes = 0;
+    }
+    
+    /**
+     * Adds a sample. Samples are ignored once the maximum total size is reached.
+     * 
+     * @param sample the sample.
+     * @return <code>true</code>, if the sample was added, <code>false</code> otherwise.
+     */
+    public synchronized boolean addSample(byte[] sample) {
+        if(sampleBytes + sample.length > maxSampleBytes)
+            return false;
+        samples.add(sample);
+        sampleBytes += sample.length;
+        return true;
+    }
+    
+    /**
+     * Returns whether or not the maximum total size of samples has been reached.
+     * 
+     * @return <code>true</code>, if no more samples are needed, <code>false</code>
+     * otherwise.
+     */
+    public synchronized boolean isFull() {
+        return sampleBytes >= maxSampleBytes;
+    }
+    
+    /**
+     * Builds a dictionary from the collected samples.
+     * 
+     * @param maxSize the maximum size of the dictionary.
+     * @return the dictionary, which may be shorter than the maximum size.
+     */
+    public synchronized byte[] build(int maxSize) {
+        maxSize = Math.min(maxSize, MAX_DICTIONARY_SIZE);
+        Map<Long, int[]> counts = new HashMap<>();
+        for(byte[] sample : samples) {
+            for(int i = 0;i + GRAM <= sample.length;++ i)
+                counts.computeIfAbsent(gram(sample, i), k -> new int[1])[0] ++;
+        }
+        // scores only decrease as segments are chosen, so a segment whose rescored
+        // value is still the best in the queue is the best segment overall
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+        for(int s = 0;s < samples.size();++ s) {
+            for(int start = 0;start < samples.get(s).length;start += SEGMENT) {
+                long score = score(counts, samples.get(s), start);
+                if(score > 0)
+                    queue.add(new long[] {score, s, start});
+            }
+        }
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        while(size < maxSize && !queue.isEmpty()) {
+            long[] top = queue.poll();
+            byte[] sample = samples.get((int)top[1]);
+            int start = (int)top[2];
+            long score = score(counts, sample, start);
+            if(score == 0)
+                continue;
+            if(!queue.isEmpty() && score < queue.peek()[0]) {
+                top[0] = score;
+                queue.add(top);
+                continue;
+            }
+            int end = Math.min(start + SEGMENT, sample.length);
+            for(int i = start;i + GRAM <= end;++ i)
+                counts.get(gram(sample, i))[0] = 0;
+            start = Math.max(start, end - (maxSize - size));
+            chosen.add(Arrays.copyOfRange(sample, start, end));
+            size += end - start;
+        }
+        byte[] dictionary = new byte[size];
+        int index = size;
+        for(byte[] segment : chosen) {
+            index -= segment.length;
+            System.arraycopy(segment, 0, dictionary, index, segment.length);
+        }
+        return dictionary;
+    }
+    
+    /**
+     * Scores a segment by the number of times its substrings appear in the samples,
+     * ignoring substrings that only appear once.
+     * 
+     * @param counts the number of times each substring appears.
+     * @param sample the sample containing the segment.
+     * @param start the index of the segment.
+     * @return the segment's score.
+     */
+    private static long score(Map<Long, int[]> counts, byte[] sample, int start) {
+        int end = Math.min(start + SEGMENT, sample.length);
+        long score = 0;
+        for(int i = start;i + GRAM <= end;++ i) {
+            int count = counts.get(gram(sample, i))[0];
+            if(count > 1)
+                score += count;
+        }
+        return score;
+    }
+    
+    /**
+     * Packs the substring at the specified index into a key.
+     * 
+     * @param data the data.
+     * @param index the index of the substring.
+     * @return the substring's key.
+     */
+    private static long gram(byte[] data, int index) {
+        long key = 0;
+        for(int i = 0;i < GRAM;++ i)
+            key = (key << 8) | (data[index + i] & 0xFF);
+        return key;
+    }
+}
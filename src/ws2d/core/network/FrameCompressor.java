@@ -0,0 +1,162 @@
+package ws2d.core.network;
+
+import ws2d.init.Config;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses outbound frames with DEFLATE. Vert.x does not negotiate the WebSocket
+ * permessage-deflate extension, so frames are compressed by Ws2D instead and
+ * marked with the ID of <code>BPacketCompressed</code>. Frames smaller than the
+ * configured threshold are sent as they are, since they rarely shrink enough to
+ * be worth the CPU time.
+ * <p>
+ * Without context takeover each frame is compressed on its own with a compressor
+ * belonging to the current thread, so the same compressed frame can be sent to
+ * several clients. With context takeover each client has its own compressor whose
+ * history carries over between frames, which compresses repetitive traffic much
+ * better at the cost of the compressor's memory for every client.
+ * 
+ * @author Ian
+ */
+public final class FrameCompressor {
+    /**
+     * The smallest frame that is compressed.
+     */
+    private final int threshold;
+    /**
+     * The compression level.
+     */
+    private final int level;
+    /**
+     * Whether or not each client's compression history carries over between frames.
+     */
+    private final boolean contextTakeover;
+    /**
+     * The preset dictionary, or <code>null</code> if there is none.
+     */
+    private final byte[] dictionary;
+    /**
+     * The compressor for each thread that compresses frames without context takeover.
+     */
+    private final ThreadLocal<Deflater> deflaters;
+    
+    /**
+     * The number of bytes the output buffer grows by when compressing with context
+     * takeover.
+     */
+    private static final int GROWTH = 64;
+    
+    /**
+     * Constructs a new instance of <code>FrameCompressor</code> from the compression
+     * settings of the specified configuration.
+     * 
+     * @param config the configuration of this Ws2D instance.
+     */
+    public FrameCompressor(Config config) {
+        this.threshold = config.getCompressionThreshold();
+        this.level = config.getCompressionLevel();
+        this.contextTakeover = config.isCompressionContextTakeover();
+        this.dictionary = config.getCompressionDictionary();
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+    
+    /**
+     * Returns whether or not each client's compression history carries over between
+     * frames.
+     * 
+     * @return <code>true</code>, if context takeover is enabled, <code>false</code>
+     * otherwise.
+     */
+    public boolean isContextTakeover() {
+        return contextTakeover;
+    }
+    
+    /**
+     * Returns whether or not a frame of the specified size is compressed.
+     * 
+     * @param size the size of the frame.
+     * @return <code>true</code>, if the frame is large enough to be compressed,
+     * <code>false</code> otherwise.
+     */
+    public boolean shouldCompress(int size) {
+        return size >= threshold;
+    }
+    
+    /**
+     * Compresses a frame on its own. The frame is not released.
+     * 
+     * @param frame the frame to compress.
+     * @param markerId the packet ID of <code>BPacketCompressed</code>.
+     * @param alloc the allocator for the compressed frame.
+     * @return the compressed frame, or <code>null</code> if the frame did not get
+     * smaller.
+     */
+    ByteBuf compress(ByteBuf frame, int markerId, ByteBufAllocator alloc) {
+        int length = frame.readableBytes();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if(dictionary != null)
+            deflater.setDictionary(dictionary);
+        setInput(deflater, frame);
+        deflater.finish();
+        ByteBuf out = alloc.heapBuffer(length);
+        PacketWriter.writeVarInt(out, markerId);
+        byte[] array = out.array();
+        int base = out.arrayOffset(), index = out.writerIndex();
+        while(!deflater.finished()) {
+            if(index >= length) {
+                out.release();
+                return null;
+            }
+            index += deflater.deflate(array, base + index, length - index);
+        }
+        out.writerIndex(index);
+        return out;
+    }
+    
+    /**
+     * Compresses a frame with a client's compressor, continuing the client's stream.
+     * Since the client's compression history now includes the frame, the compressed
+     * frame must be sent even if it is larger. The frame is not released.
+     * 
+     * @param frame the frame to compress.
+     * @param markerId the packet ID of <code>BPacketCompressed</code>.
+     * @param state the client's compression state, whose lock must be held.
+     * @param alloc the allocator for the compressed frame.
+     * @return the compressed frame, or <code>null</code> if the client has disconnected.
+     */
+    ByteBuf compress(ByteBuf frame, int markerId, CompressionState state, ByteBufAllocator alloc) {
+        Deflater deflater = state.getDeflater(level, dictionary);
+        if(deflater == null)
+            return null;
+        setInput(deflater, frame);
+        ByteBuf out = alloc.heapBuffer(frame.readableBytes() / 2 + GROWTH);
+        PacketWriter.writeVarInt(out, markerId);
+        for(;;) {
+            out.ensureWritable(GROWTH);
+            int space = out.writableBytes();
+            int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), space, Deflater.SYNC_FLUSH);
+            out.writerIndex(out.writerIndex() + written);
+            if(written < space)
+                return out;
+        }
+    }
+    
+    /**
+     * Passes the readable bytes of a heap buffer to a compressor.
+     * 
+     * @param deflater the compressor.
+     * @param frame the frame.
+     */
+    private static void setInput(Deflater deflater, ByteBuf frame) {
+        if(frame.hasArray())
+            deflater.setInput(frame.array(), frame.arrayOffset() + frame.readerIndex(), frame.readableBytes());
+        else {
+            byte[] bytes = new byte[frame.readableBytes()];
+            frame.getBytes(frame.readerIndex(), bytes);
+            deflater.setInput(bytes);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ws2d.core.network;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Orders the handling of a single client's packets while some of them are handled
+ * asynchronously. Each task is given a future that it completes once its packet
+ * has been fully handled, and the next task does not start until then. Tasks that
+ * have to wait are started on the event loop of the client's socket.
+ * 
+ * @author Ian
+ */
+public final class HandlerChain {
+    /**
+     * The context of the client's socket, or <code>null</code> if the chain was
+     * not created on an event loop.
+     */
+    private final Context context;
+    /**
+     * The future of the last task that was submitted.
+     */
+    private volatile CompletableFuture<Void> tail;
+    
+    /**
+     * Constructs a new instance of <code>HandlerChain</code> for the client whose
+     * socket is handled by the current event loop.
+     */
+    public HandlerChain() {
+        this.context = Vertx.currentContext();
+        this.tail = CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Returns whether or not every submitted task has finished.
+     * 
+     * @return <code>true</code>, if no task is running, <code>false</code> otherwise.
+     */
+    public boolean isIdle() {
+        return tail.isDone();
+    }
+    
+    /**
+     * Submits a task to run once every previously submitted task has finished. If
+     * no task is running the task is started immediately on the calling thread.
+     * This must only be called by one thread at a time.
+     * 
+     * @param task the task, which completes the future it is given once it has
+     * finished.
+     */
+    void submit(Consumer<CompletableFuture<Void>> task) {
+        CompletableFuture<Void> previous = tail, next = new CompletableFuture<>();
+        tail = next;
+        if(previous.isDone())
+            task.accept(next);
+        else
+            previous.whenComplete((unused, t) -> execute(() -> task.accept(next)));
+    }
+    
+    /**
+     * Runs an action on the event loop of the client's socket.
+     * 
+     * @param action the action to run.
+     */
+    void execute(Runnable action) {
+        if(context == null || Vertx.currentContext() == context)
+            action.run();
+        else
+            context.runOnContext(unused -> action.run());
+    }
+}
@@ -0,0 +1,99 @@
+package ws2d.core.network;
+
+import ws2d.util.BoundedQueue;
+
+/**
+ * Holds the packets a single client has sent that are waiting to be handled on
+ * the game loop thread. Packets are added by the client's event loop and removed
+ * by the game loop, and the queue has a fixed capacity so that a client which
+ * floods the server is paused instead of growing the queue.
+ * 
+ * @author Ian
+ */
+public final class InboundQueue {
+    /**
+     * The queued packets.
+     */
+    private final BoundedQueue<Packet> packets;
+    /**
+     * Whether or not the client's socket has been paused because the queue filled up.
+     */
+    private volatile boolean paused;
+    
+    /**
+     * Constructs a new instance of <code>InboundQueue</code> with a specified capacity.
+     * 
+     * @param capacity the maximum number of queued packets.
+     */
+    public InboundQueue(int capacity) {
+        this.packets = new BoundedQueue<>(capacity);
+        this.paused = false;
+    }
+    
+    /**
+     * Adds a packet to the queue if there is room for it.
+     * 
+     * @param packet the packet to add.
+     * @return <code>true</code>, if the packet was added, <code>false</code> if the
+     * queue is full.
+     */
+    boolean offer(Packet packet) {
+        return packets.offer(packet);
+    }
+    
+    /**
+     * Removes the oldest packet from the queue.
+     * 
+     * @return the oldest packet, or <code>null</code> if the queue is empty.
+     */
+    Packet poll() {
+        return packets.poll();
+    }
+    
+    /**
+     * Returns whether or not the queue has no room left.
+     * 
+     * @return <code>true</code>, if the queue is full, <code>false</code> otherwise.
+     */
+    boolean isFull() {
+        return packets.size() >= packets.capacity();
+    }
+    
+    /**
+     * Returns whether or not the queue has drained enough for a paused socket to
+     * be resumed.
+     * 
+     * @return <code>true</code>, if the queue is at most half full, <code>false</code>
+     * otherwise.
+     */
+    boolean canResume() {
+        return packets.size() <= packets.capacity() / 2;
+    }
+    
+    /**
+     * Returns whether or not the client's socket is paused.
+     * 
+     * @return <code>true</code>, if the socket is paused, <code>false</code> otherwise.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+    
+    /**
+     * Records whether or not the client's socket is paused.
+     * 
+     * @param paused whether or not the socket is paused.
+     */
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+    
+    /**
+     * Returns the number of packets waiting to be handled.
+     * 
+     * @return the number of queued packets.
+     */
+    public int size() {
+        return packets.size();
+    }
+}
@@ -1,15 +1,26 @@
 package ws2d.core.network;
 
 import ws2d.core.generic.Client;
+import ws2d.core.network.packet.BPacketBundle;
+import ws2d.core.network.packet.BPacketCompressed;
+import ws2d.init.Config;
 import ws2d.init.Ws2D;
 import ws2d.core.server.Server;
 import ws2d.util.Logger;
-import ws2d.util.Utils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.impl.FrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
 import io.vertx.core.streams.StreamBase;
-import java.util.Arrays;
-import stg.buffer.ByteBuffer;
-import stg.reflect.ReflectionHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
 
 /**
  * The chief class that manages network interactions in the Ws2D platform. This
@@ -23,37 +34,390 @@ public class NetworkHandler {
      * The logger for the <code>NetworkHandler</code>.
      */
     private static final Logger LOG = new Logger("NET");
+    /**
+     * The allocator for outbound packet buffers. Heap buffers are used since Vert.x
+     * copies direct buffers onto the heap before encoding a WebSocket frame.
+     */
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+    /**
+     * The packet writer for each thread that sends packets.
+     */
+    private static final ThreadLocal<PacketWriter> WRITER = ThreadLocal.withInitial(PacketWriter::new);
     
     /**
-     * Attaches the socket to the network system of Ws2D so that packets are directed
-     * to the correct listeners.
+     * The server whose clients this handler sends to.
+     */
+    private final Server server;
+    /**
+     * Whether or not packets sent to clients are bundled until the end of the tick.
+     */
+    private final boolean batchPackets;
+    /**
+     * Whether or not inbound packets are queued and handled on the game loop.
+     */
+    private final boolean queueInbound;
+    /**
+     * The maximum number of queued inbound packets handled per tick.
+     */
+    private final int inboundBudget;
+    /**
+     * The clients whose inbound queues are being drained. This is only used on
+     * the game loop thread.
+     */
+    private final List<Client> draining;
+    /**
+     * The index of the client that is drained first in the next tick.
+     */
+    private int drainOffset;
+    /**
+     * The compressor for outbound frames, or <code>null</code> if compression is
+     * disabled.
+     */
+    private final FrameCompressor compressor;
+    /**
+     * The builder that outbound packets are sampled into, or <code>null</code> if
+     * packets are not being sampled.
+     */
+    private volatile DictionaryBuilder sampler;
+    /**
+     * The configuration of this Ws2D instance.
+     */
+    private final Config config;
+    /**
+     * The worker pool that runs blocking packet handlers.
+     */
+    private final WorkerExecutor workers;
+    /**
+     * The treatment of clients whose sockets cannot keep up.
+     */
+    private final SlowClientPolicy slowPolicy;
+    /**
+     * The number of nanoseconds a client may be slow before it is disconnected
+     * under the <code>DISCONNECT</code> policy.
+     */
+    private final long slowTimeout;
+    /**
+     * The number of bytes waiting to be sent to a client above which it is
+     * disconnected, whatever the slow client policy.
+     */
+    private final long queueLimit;
+    
+    /**
+     * Constructs a new instance of <code>NetworkHandler</code> for the specified
+     * server and configuration.
+     * 
+     * @param server the server whose clients this handler sends to.
+     * @param config the configuration of this Ws2D instance.
+     */
+    public NetworkHandler(Server server, Config config) {
+        this.server = server;
+        this.batchPackets = config.isBatchPackets();
+        this.queueInbound = config.isQueueInboundPackets();
+        this.inboundBudget = config.getInboundPacketBudget();
+        this.draining = new ArrayList<>();
+        this.drainOffset = 0;
+        this.compressor = config.isCompression() ? new FrameCompressor(config) : null;
+        this.sampler = null;
+        this.config = config;
+        this.workers = server.getVertx().createSharedWorkerExecutor("ws2d-packet-worker", config.getWorkerPoolSize());
+        this.slowPolicy = config.getSlowClientPolicy();
+        this.slowTimeout = config.getSlowClientTimeout() * 1000000000L;
+        this.queueLimit = (long)config.getWriteQueueHighWatermark() * config.getWriteQueueLimit();
+    }
+    
+    /**
+     * Attaches a client's socket to the network system of Ws2D so that packets are
+     * directed to the correct listeners. The client is bound to the socket, so every
+     * packet received through it is attributed to the client without any lookup.
+     * Each frame starts with the packet ID as a variable length integer, which is
+     * checked against the client's rate limits before the packet is deserialized.
+     * Every valid packet is counted in its type's traffic counts.
      * 
-     * @param socket the socket to attach.
-     * @param server the current running server instance.
+     * @param client the client whose socket to attach.
      */
-    public void bindMessageHandler(ServerWebSocket socket, Server server) {
+    public void bindMessageHandler(Client client) {
+        final ServerWebSocket socket = client.getSocket();
+        final PacketReader reader = new PacketReader();
+        final int bundleId = bundleId();
+        final PacketDispatcher dispatcher = Ws2D.getRegistry().getDispatcher();
+        final RateLimiter limiter = new RateLimiter(config, dispatcher);
+        client.getWriteMonitor().setWatermarks(config.getWriteQueueLowWatermark(), config.getWriteQueueHighWatermark());
         socket.handler(buf -> {
-            int pid = buf.getByte(0), uid = buf.getByte(1);
-            if(pid >= Ws2D.getRegistry().getRegisteredPackets().size()) {
+            ByteBuf data = buf.getByteBuf();
+            int length = data.readableBytes(), pid, index;
+            try {
+                pid = reader.wrap(data, 0, length).readVarInt();
+                index = reader.position();
+            }catch(IndexOutOfBoundsException ex) {
                 LOG.warn("A client sent an invalid packet. IP: " + socket.remoteAddress().toString());
                 return;
+            }finally {
+                reader.clear();
             }
-            PacketData<Packet> pd = Ws2D.getRegistry().getRegisteredPackets().get(pid);
-            ByteBuffer buffer = new ByteBuffer(Arrays.copyOfRange(buf.getBytes(), 2, buf.length()));
-            Packet packet = (Packet)ReflectionHelper.instantiate(pd.packetClass);
-            packet.deserialize(buffer);
-            Client client = server.getClient(uid);
-            if(!Utils.socketAddressEquals(socket.remoteAddress(), client.getSocket().remoteAddress())) {
-                LOG.info("A client attempted to act as another client. IP: " + socket.remoteAddress().host());
-                socket.close();
+            if(pid != bundleId) {
+                if(!limiter.tryAcquire(pid))
+                    throttle(client, limiter);
+                else if(handlePacket(client, reader, pid, data, index, length - index))
+                    dispatcher.getStats(pid).recordReceived(length);
                 return;
             }
+            while(index + 3 <= length) {
+                int size = data.getUnsignedShort(index);
+                index += 2;
+                if(size == 0 || index + size > length)
+                    break;
+                int start;
+                try {
+                    pid = reader.wrap(data, index, size).readVarInt();
+                    start = reader.position();
+                }catch(IndexOutOfBoundsException ex) {
+                    break;
+                }finally {
+                    reader.clear();
+                }
+                if(!limiter.tryAcquire(pid)) {
+                    if(!throttle(client, limiter))
+                        return;
+                }else if(handlePacket(client, reader, pid, data, start, index + size - start))
+                    dispatcher.getStats(pid).recordReceived(size);
+                else
+                    return;
+                index += size;
+            }
+            if(index != length)
+                LOG.warn("A client sent a malformed packet bundle. IP: " + socket.remoteAddress().toString());
+        });
+    }
+    
+    /**
+     * Records that a packet from a client was dropped by its rate limiter. Once the
+     * client has enough strikes its socket is paused for a second, and once it has
+     * more it is disconnected.
+     * 
+     * @param client the client whose packet was dropped.
+     * @param limiter the client's rate limiter.
+     * @return <code>true</code>, if the client is still connected, <code>false</code>
+     * otherwise.
+     */
+    private boolean throttle(Client client, RateLimiter limiter) {
+        int strikes = limiter.recordDrop();
+        if(strikes == 0)
+            return true;
+        ServerWebSocket socket = client.getSocket();
+        if(strikes >= config.getRateLimitDisconnectStrikes()) {
+            LOG.warn("A client exceeded its packet rate limit too often and was disconnected. IP: " + socket.remoteAddress().toString());
+            socket.close();
+            return false;
+        }
+        if(strikes >= config.getRateLimitPauseStrikes()) {
+            socket.pause();
+            server.getVertx().setTimer(RateLimiter.STRIKE_WINDOW / 1000000L, id -> {
+                if(!client.getInboundQueue().isPaused())
+                    socket.resume();
+            });
+        }
+        return true;
+    }
+    
+    /**
+     * Deserializes a single inbound packet and passes it to its handler. If inbound
+     * packets are queued the packet is added to the client's inbound queue instead,
+     * and the client's socket is paused once the queue is full.
+     * 
+     * @param client the client who sent the packet.
+     * @param reader the reader for the client's socket.
+     * @param pid the packet ID.
+     * @param data the received frame.
+     * @param offset the index of the packet's data in the frame.
+     * @param length the length of the packet's data.
+     * @return <code>true</code>, if the packet was valid, <code>false</code> otherwise.
+     */
+    private boolean handlePacket(Client client, PacketReader reader, int pid, ByteBuf data, int offset, int length) {
+        ServerWebSocket socket = client.getSocket();
+        PacketDispatcher dispatcher = Ws2D.getRegistry().getDispatcher();
+        PacketData<Packet> pd = dispatcher.getPacketData(pid);
+        Packet packet = pd == null || !pd.isHandled() ? null : dispatcher.instantiate(pid);
+        if(packet == null) {
+            LOG.warn("A client sent an invalid packet. IP: " + socket.remoteAddress().toString());
+            return false;
+        }
+        try {
+            packet.deserialize(reader.wrap(data, offset, length));
+        }catch(IndexOutOfBoundsException ex) {
+            dispatcher.release(pid, packet);
+            LOG.warn("A client sent a malformed packet. IP: " + socket.remoteAddress().toString());
+            return false;
+        }finally {
+            reader.clear();
+        }
+        if(!queueInbound) {
+            dispatch(client, pd, packet);
+            return true;
+        }
+        InboundQueue queue = client.getInboundQueue();
+        if(!queue.offer(packet)) {
+            dispatcher.release(pid, packet);
+            LOG.warn("Dropped a packet from a client whose inbound queue is full. IP: " + socket.remoteAddress().toString());
+        }
+        if(queue.isFull() && !queue.isPaused()) {
+            // the socket is paused before the flag is set so that the game loop
+            // never resumes a socket that has not been paused yet
+            socket.pause();
+            queue.setPaused(true);
+        }
+        return true;
+    }
+    
+    /**
+     * Handles the packets waiting in each client's inbound queue. Clients are
+     * drained in turn, one packet at a time, until every queue is empty or the
+     * configured number of packets has been handled, so a single busy client cannot
+     * starve the others. Clients whose previous packet is still being handled
+     * asynchronously are skipped. Sockets that were paused are resumed once their
+     * queue is at most half full. This is called by the server once per tick and
+     * does nothing unless inbound packets are queued.
+     */
+    public void processInbound() {
+        if(!queueInbound)
+            return;
+        server.forEachClient(draining::add);
+        int count = draining.size();
+        if(count == 0)
+            return;
+        int offset = drainOffset++ % count, budget = inboundBudget;
+        boolean handled = true;
+        while(handled && budget > 0) {
+            handled = false;
+            for(int i = 0;i < count && budget > 0;++ i) {
+                Client client = draining.get((i + offset) % count);
+                if(!client.getHandlerChain().isIdle())
+                    continue;
+                Packet packet = client.getInboundQueue().poll();
+                if(packet == null)
+                    continue;
+                handled = true;
+                -- budget;
+                PacketData<Packet> pd = Ws2D.getRegistry().getDispatcher().getPacketData(packet);
+                try {
+                    dispatch(client, pd, packet);
+                }catch(RuntimeException ex) {
+                    LOG.warn("Encountered an error while handling a " + packet.getClass().getSimpleName() + ".", ex);
+                }
+            }
+        }
+        for(Client client : draining) {
+            InboundQueue queue = client.getInboundQueue();
+            if(queue.isPaused() && queue.canResume()) {
+                queue.setPaused(false);
+                client.getSocket().resume();
+            }
+        }
+        draining.clear();
+    }
+    
+    /**
+     * Passes a deserialized packet to its handler and sends the handler's response.
+     * Pooled packets are returned to their pool once the response has been
+     * serialized, since the handler may respond with the packet it received. If
+     * the packet is handled asynchronously, or the client's previous packet is still
+     * being handled, the packet is handled through the client's handler chain so
+     * that the client's packets are handled in order.
+     * 
+     * @param client the client who sent the packet.
+     * @param pd the packet's data.
+     * @param packet the packet.
+     */
+    private void dispatch(Client client, PacketData<Packet> pd, Packet packet) {
+        HandlerChain chain = client.getHandlerChain();
+        if(pd.isAsync() || !chain.isIdle()) {
+            chain.submit(done -> dispatchAsync(client, pd, packet, done));
+            return;
+        }
+        try {
             Packet response = pd.handler.onMessage(server, client, packet);
             if(response != null)
-                sendPacket(response, socket);
+                sendPacket(response, client);
+        }finally {
+            Ws2D.getRegistry().getDispatcher().release(pd.id, packet);
+        }
+    }
+    
+    /**
+     * Passes a deserialized packet to its handler through the client's handler chain.
+     * Blocking handlers are run on the worker pool. The response is sent and the
+     * packet released on the event loop of the client's socket once the handler's
+     * stage has completed.
+     * 
+     * @param client the client who sent the packet.
+     * @param pd the packet's data.
+     * @param packet the packet.
+     * @param done the future completed once the packet has been handled.
+     */
+    private void dispatchAsync(Client client, PacketData<Packet> pd, Packet packet, CompletableFuture<Void> done) {
+        if(!pd.options.isBlocking()) {
+            complete(client, pd, packet, invoke(client, pd, packet), done);
+            return;
+        }
+        workers.<CompletionStage<Packet>>executeBlocking(future -> future.complete(invoke(client, pd, packet)), false, result -> {
+            CompletionStage<Packet> stage = result.result();
+            if(result.failed()) {
+                CompletableFuture<Packet> failed = new CompletableFuture<>();
+                failed.completeExceptionally(result.cause());
+                stage = failed;
+            }
+            complete(client, pd, packet, stage, done);
         });
     }
     
+    /**
+     * Calls the handler of a packet, adapting synchronous handlers to return a stage.
+     * 
+     * @param client the client who sent the packet.
+     * @param pd the packet's data.
+     * @param packet the packet.
+     * @return a stage that completes with the handler's response.
+     */
+    private CompletionStage<Packet> invoke(Client client, PacketData<Packet> pd, Packet packet) {
+        try {
+            if(pd.asyncHandler == null)
+                return CompletableFuture.completedFuture(pd.handler.onMessage(server, client, packet));
+            CompletionStage<Packet> stage = pd.asyncHandler.onMessage(server, client, packet);
+            return stage == null ? CompletableFuture.completedFuture(null) : stage;
+        }catch(RuntimeException ex) {
+            CompletableFuture<Packet> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+    }
+    
+    /**
+     * Finishes handling a packet once its handler's stage has completed. The
+     * packet is released after the response has been serialized, since the
+     * handler may respond with the packet it received.
+     * 
+     * @param client the client who sent the packet.
+     * @param pd the packet's data.
+     * @param packet the packet.
+     * @param stage the stage returned by the handler.
+     * @param done the future completed once the packet has been handled.
+     */
+    private void complete(Client client, PacketData<Packet> pd, Packet packet, CompletionStage<Packet> stage, CompletableFuture<Void> done) {
+        stage.whenComplete((response, t) -> client.getHandlerChain().execute(() -> {
+            try {
+                if(t != null)
+                    LOG.warn("Encountered an error while handling a " + packet.getClass().getSimpleName() + ".", t);
+                else if(response != null)
+                    sendPacket(response, client);
+            }finally {
+                try {
+                    Ws2D.getRegistry().getDispatcher().release(pd.id, packet);
+                }finally {
+                    done.complete(null);
+                }
+            }
+        }));
+    }
+    
     /**
      * Attaches the default error handler to the specified socket.
      * 
@@ -64,30 +428,503 @@ public class NetworkHandler {
     }
     
     /**
-     * Formats and sends a packet through the specified socket.
+     * Formats and sends a packet through the specified socket. The packet is
+     * written immediately, even if packet batching is enabled.
      * 
      * @param packet the packet to send.
      * @param socket the socket to send the packet through.
+     * @throws IllegalArgumentException if the packet has not been registered.
      */
     public void sendPacket(Packet packet, ServerWebSocket socket) {
-        ByteBuffer buffer = new ByteBuffer();
-        buffer.append(getPacketData(packet).id);
-        packet.serialize(buffer);
-        socket.write(Utils.buffer(buffer.toArray()));
+        ByteBuf buf = encode(packet);
+        getStats(packet).recordSent(buf.readableBytes());
+        writeFrame(socket, buf);
+    }
+    
+    /**
+     * Formats and sends a packet to the specified client. If packet batching is
+     * enabled the packet is queued and sent with the client's other packets at
+     * the end of the tick. Droppable packets are not sent if the client is slow.
+     * 
+     * @param packet the packet to send.
+     * @param client the client to send the packet to.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    public void sendPacket(Packet packet, Client client) {
+        ByteBuf buf = encode(packet);
+        getStats(packet).recordSent(buf.readableBytes());
+        try {
+            sendShared(client, buf, -1, isDroppable(packet));
+        }finally {
+            buf.release();
+        }
+    }
+    
+    /**
+     * Sends a packet to every connected client. The packet is serialized once and
+     * the same buffer is written to each socket.
+     * 
+     * @param packet the packet to send.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    public void broadcast(Packet packet) {
+        multicast(packet, client -> true);
+    }
+    
+    /**
+     * Sends a packet to every connected client that matches the specified filter.
+     * The packet is serialized once and the same buffer is written to each socket.
+     * If the packet is compressed without context takeover, it is also compressed
+     * once.
+     * 
+     * @param packet the packet to send.
+     * @param filter the filter that selects the clients to send to.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    public void multicast(Packet packet, Predicate<? super Client> filter) {
+        ByteBuf encoded = encode(packet);
+        final PacketStats stats = getStats(packet);
+        final int size = encoded.readableBytes();
+        final int raw = canCompressShared(encoded) ? size : -1;
+        final ByteBuf buf = raw < 0 ? encoded : compressShared(encoded);
+        final boolean droppable = isDroppable(packet);
+        try {
+            server.forEachClient(client -> {
+                if(filter.test(client)) {
+                    stats.recordSent(size);
+                    sendShared(client, buf, raw, droppable);
+                }
+            });
+        }finally {
+            buf.release();
+        }
+    }
+    
+    /**
+     * Sends a packet to each of the specified clients. The packet is serialized
+     * once and the same buffer is written to each socket. If the packet is compressed
+     * without context takeover, it is also compressed once.
+     * 
+     * @param packet the packet to send.
+     * @param clients the clients to send to.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    public void multicast(Packet packet, Iterable<? extends Client> clients) {
+        ByteBuf buf = encode(packet);
+        PacketStats stats = getStats(packet);
+        int size = buf.readableBytes();
+        int raw = canCompressShared(buf) ? size : -1;
+        if(raw >= 0)
+            buf = compressShared(buf);
+        boolean droppable = isDroppable(packet);
+        try {
+            for(Client client : clients) {
+                stats.recordSent(size);
+                sendShared(client, buf, raw, droppable);
+            }
+        }finally {
+            buf.release();
+        }
+    }
+    
+    /**
+     * Sends a packet to a client, replacing any packet of the same type and key
+     * that is still waiting to be sent to the client. Conflated packets are held
+     * until the end of the tick, and are held for longer while the client's socket
+     * cannot keep up, so a slow client only receives the latest packet for each
+     * key. Conflated packets may therefore arrive after packets that were sent
+     * later without conflation.
+     * 
+     * @param packet the packet to send.
+     * @param key the conflation key, such as the ID of the entity the packet
+     * describes.
+     * @param client the client to send the packet to.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    public void sendConflated(Packet packet, int key, Client client) {
+        ByteBuf buf = encode(packet);
+        getStats(packet).recordSent(buf.readableBytes());
+        client.getOutboundQueue().conflate(conflationKey(packet, key), buf);
+    }
+    
+    /**
+     * Sends a packet to each of the specified clients, replacing any packet of the
+     * same type and key that is still waiting to be sent to each client. The packet
+     * is serialized once for all of the clients.
+     * 
+     * @param packet the packet to send.
+     * @param key the conflation key, such as the ID of the entity the packet
+     * describes.
+     * @param clients the clients to send to.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     * @see #sendConflated(Packet, int, Client)
+     */
+    public void multicastConflated(Packet packet, int key, Iterable<? extends Client> clients) {
+        ByteBuf buf = encode(packet);
+        PacketStats stats = getStats(packet);
+        long conflationKey = conflationKey(packet, key);
+        try {
+            for(Client client : clients) {
+                stats.recordSent(buf.readableBytes());
+                client.getOutboundQueue().conflate(conflationKey, buf.retainedDuplicate());
+            }
+        }finally {
+            buf.release();
+        }
+    }
+    
+    /**
+     * Sends every client's queued packets. Conflated packets are sent unless the
+     * client is slow. If packet batching is enabled, each client's packets are sent
+     * as a single frame. Slow clients are treated according to the slow client
+     * policy, and any client with more bytes waiting to be sent to it than the
+     * write queue limit allows is disconnected. This is called by the server at the
+     * end of each tick.
+     */
+    public void flush() {
+        final long now = System.nanoTime();
+        server.forEachClient(client -> {
+            if(client.getWriteMonitor().isDisconnected())
+                return;
+            if(getQueuedBytes(client) > queueLimit) {
+                disconnectSlow(client, "has too many queued bytes");
+                return;
+            }
+            OutboundQueue queue = client.getOutboundQueue();
+            long slowFor = client.getWriteMonitor().updateSlow(now);
+            if(slowFor >= 0) {
+                if(slowPolicy == SlowClientPolicy.DISCONNECT && slowFor >= slowTimeout) {
+                    disconnectSlow(client, "has been slow for too long");
+                    return;
+                }
+                if(slowPolicy == SlowClientPolicy.PAUSE) {
+                    if(queue.getQueuedBytes() > config.getWriteQueueHighWatermark())
+                        disconnectSlow(client, "has too many held packets");
+                    return;
+                }
+            }
+            ByteBuf packet;
+            while((packet = queue.pollHeld()) != null)
+                deliver(client, packet, -1);
+            if(slowFor < 0 && queue.hasConflated()) {
+                while((packet = queue.pollConflated()) != null) {
+                    try {
+                        sendShared(client, packet, -1, false);
+                    }finally {
+                        packet.release();
+                    }
+                }
+            }
+            if(!batchPackets)
+                return;
+            ByteBuf bundle = queue.drain();
+            if(bundle != null)
+                deliver(client, bundle, -1);
+        });
+    }
+    
+    /**
+     * Starts copying every outbound packet into a dictionary builder, so that a
+     * preset compression dictionary can be built from real traffic. Any sampling
+     * that is already in progress is discarded.
+     * 
+     * @param maxSampleBytes the maximum number of bytes to sample.
+     */
+    public void startSampling(int maxSampleBytes) {
+        sampler = new DictionaryBuilder(maxSampleBytes);
+    }
+    
+    /**
+     * Stops sampling outbound packets.
+     * 
+     * @return the dictionary builder containing the samples, or <code>null</code>
+     * if packets were not being sampled.
+     */
+    public DictionaryBuilder stopSampling() {
+        DictionaryBuilder builder = sampler;
+        sampler = null;
+        return builder;
+    }
+    
+    /**
+     * Serializes a packet and its ID into a pooled buffer. The initial capacity
+     * of the buffer is the largest size seen for the packet type, so the buffer
+     * rarely needs to grow. The caller is responsible for releasing the buffer.
+     * 
+     * @param packet the packet to serialize.
+     * @return a buffer containing the serialized packet.
+     * @throws IllegalArgumentException if the packet has not been registered.
+     */
+    private ByteBuf encode(Packet packet) {
+        PacketDispatcher dispatcher = Ws2D.getRegistry().getDispatcher();
+        PacketData<Packet> pd = dispatcher.getPacketData(packet);
+        if(pd == null)
+            throw new IllegalArgumentException("Unregistered packet: " + packet.getClass().getName());
+        ByteBuf buf = ALLOCATOR.heapBuffer(dispatcher.getSizeHint(pd.id));
+        PacketWriter writer = WRITER.get().wrap(buf);
+        try {
+            writer.writeVarInt(pd.id);
+            packet.serialize(writer);
+            writer.flushBits();
+        }catch(RuntimeException | Error ex) {
+            buf.release();
+            throw ex;
+        }finally {
+            writer.clear();
+        }
+        dispatcher.recordSize(pd.id, buf.readableBytes());
+        DictionaryBuilder builder = sampler;
+        if(builder != null && !builder.isFull())
+            builder.addSample(ByteBufUtil.getBytes(buf));
+        return buf;
+    }
+    
+    /**
+     * Sends an encoded packet to a client without consuming the caller's reference.
+     * When packet batching is enabled the packet is copied into the client's bundle,
+     * otherwise the buffer itself is written to the socket. Clients that have already
+     * disconnected, or are being disconnected for being slow, are skipped.
+     * Droppable packets are dropped if the client is slow, and under the
+     * <code>PAUSE</code> policy frames are held instead of written while the client
+     * is slow.
+     * 
+     * @param client the client to send to.
+     * @param data the encoded packet.
+     * @param raw the size of the packet before it was compressed, or <code>-1</code>
+     * if it has not been through compression yet.
+     * @param droppable whether or not the packet may be dropped.
+     */
+    private void sendShared(Client client, ByteBuf data, int raw, boolean droppable) {
+        WriteMonitor monitor = client.getWriteMonitor();
+        if(monitor.isDisconnected())
+            return;
+        boolean slow = monitor.isSlow();
+        if(slow && droppable) {
+            monitor.recordDrop();
+            return;
+        }
+        OutboundQueue queue = client.getOutboundQueue();
+        boolean hold = slowPolicy == SlowClientPolicy.PAUSE && (slow || queue.isHolding());
+        if(!batchPackets) {
+            if(hold)
+                queue.hold(data.retainedDuplicate());
+            else
+                deliver(client, data.retainedDuplicate(), raw);
+            return;
+        }
+        if(data.readableBytes() > OutboundQueue.MAX_BUNDLED_SIZE) {
+            ByteBuf bundle = queue.drain();
+            if(bundle != null) {
+                if(hold)
+                    queue.hold(bundle);
+                else
+                    deliver(client, bundle, -1);
+            }
+            if(hold)
+                queue.hold(data.retainedDuplicate());
+            else
+                deliver(client, data.retainedDuplicate(), -1);
+            return;
+        }
+        ByteBuf full = queue.append(data, bundleId(), ALLOCATOR);
+        if(full == null)
+            return;
+        if(hold)
+            queue.hold(full);
+        else
+            deliver(client, full, -1);
+    }
+    
+    /**
+     * Combines a packet's ID with a conflation key.
+     * 
+     * @param packet the packet.
+     * @param key the conflation key.
+     * @return the key within the client's outbound queue.
+     */
+    private static long conflationKey(Packet packet, int key) {
+        return (long)Ws2D.getRegistry().getDispatcher().getPacketData(packet).id << 32 | (key & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Returns the number of bytes waiting to be sent to a client, both in its
+     * outbound queue and in its socket's write queue.
+     * 
+     * @param client the client.
+     * @return the number of queued bytes.
+     */
+    public long getQueuedBytes(Client client) {
+        return client.getOutboundQueue().getQueuedBytes() + client.getWriteMonitor().getQueuedBytes();
     }
     
     /**
-     * Gets the packet data for a specified instantiated packet.
+     * Returns the traffic counts of a registered packet's type. Packets are counted
+     * once for each client they are sent to, including droppable packets that are
+     * later dropped and conflated packets that are later replaced.
      * 
-     * @param packet the packet to retrieve data or.
+     * @param packet the packet.
+     * @return the traffic counts of the packet's type.
+     */
+    private static PacketStats getStats(Packet packet) {
+        PacketDispatcher dispatcher = Ws2D.getRegistry().getDispatcher();
+        return dispatcher.getStats(dispatcher.getPacketData(packet).id);
+    }
+    
+    /**
+     * Returns whether or not a packet may be dropped when the client is slow.
+     * 
+     * @param packet the packet.
+     * @return <code>true</code>, if the packet is droppable, <code>false</code>
+     * otherwise.
+     */
+    private static boolean isDroppable(Packet packet) {
+        PacketData<Packet> pd = Ws2D.getRegistry().getDispatcher().getPacketData(packet);
+        return pd != null && pd.options.isDroppable();
+    }
+    
+    /**
+     * Disconnects a client that cannot keep up with the packets sent to it.
+     * 
+     * @param client the client.
+     * @param reason the reason the client is disconnected.
+     */
+    private static void disconnectSlow(Client client, String reason) {
+        if(!client.getWriteMonitor().disconnect())
+            return;
+        ServerWebSocket socket = client.getSocket();
+        try {
+            LOG.warn("Disconnected a slow client that " + reason + ". IP: " + socket.remoteAddress().toString());
+            socket.close();
+        }catch(IllegalStateException ex) { }
+    }
+    
+    /**
+     * Returns whether or not a frame sent to several clients can be compressed once
+     * for all of them, which is the case when compression is enabled without context
+     * takeover, the frame is written without being bundled, and frames are never
+     * held for slow clients, since held frames are compressed when they are sent.
+     * 
+     * @param data the frame.
+     * @return <code>true</code>, if the frame can be compressed once, <code>false</code>
+     * otherwise.
+     */
+    private boolean canCompressShared(ByteBuf data) {
+        return !batchPackets && compressor != null && !compressor.isContextTakeover()
+                && slowPolicy != SlowClientPolicy.PAUSE && compressor.shouldCompress(data.readableBytes());
+    }
+    
+    /**
+     * Compresses a frame that is sent to several clients. The original frame is
+     * released if it is replaced.
+     * 
+     * @param data the frame.
+     * @return the compressed frame, or the original frame if it did not get smaller.
+     */
+    private ByteBuf compressShared(ByteBuf data) {
+        ByteBuf compressed;
+        try {
+            compressed = compressor.compress(data, compressedId(), ALLOCATOR);
+        }catch(RuntimeException ex) {
+            data.release();
+            throw ex;
+        }
+        if(compressed == null)
+            return data;
+        data.release();
+        return compressed;
+    }
+    
+    /**
+     * Writes a frame to a client, compressing it first if compression is enabled
+     * and the frame is large enough. The frame is consumed.
+     * 
+     * @param client the client to write to.
+     * @param data the frame.
+     * @param raw the size of the frame before it was compressed, or <code>-1</code>
+     * if it has not been through compression yet.
+     */
+    private void deliver(Client client, ByteBuf data, int raw) {
+        if(compressor == null) {
+            writeQuietly(client.getSocket(), data);
+            return;
+        }
+        CompressionState state = client.getCompressionState();
+        if(raw >= 0 || !compressor.shouldCompress(data.readableBytes())) {
+            state.record(raw >= 0 ? raw : data.readableBytes(), data.readableBytes());
+            writeQuietly(client.getSocket(), data);
+            return;
+        }
+        raw = data.readableBytes();
+        if(!compressor.isContextTakeover()) {
+            data = compressShared(data);
+            state.record(raw, data.readableBytes());
+            writeQuietly(client.getSocket(), data);
+            return;
+        }
+        // the frame is written while holding the lock so that frames reach the
+        // client in the same order as they entered its compression stream
+        synchronized(state) {
+            ByteBuf compressed;
+            try {
+                compressed = compressor.compress(data, compressedId(), state, ALLOCATOR);
+            }finally {
+                data.release();
+            }
+            if(compressed != null) {
+                state.record(raw, compressed.readableBytes());
+                writeQuietly(client.getSocket(), compressed);
+            }
+        }
+    }
+    
+    /**
+     * Writes a buffer to a socket, releasing the buffer instead of throwing if the
+     * socket has already closed.
+     * 
+     * @param socket the socket to write to.
+     * @param data the frame data.
+     */
+    private static void writeQuietly(ServerWebSocket socket, ByteBuf data) {
+        try {
+            writeFrame(socket, data);
+        }catch(IllegalStateException ex) { }
+    }
+    
+    /**
+     * Returns the packet ID of the bundle packet.
+     * 
+     * @return the packet ID of the bundle packet.
+     */
+    private static int bundleId() {
+        return Ws2D.getRegistry().getDispatcher().getPacketData(BPacketBundle.class).id;
+    }
+    
+    /**
+     * Returns the packet ID of the compressed frame marker.
+     * 
+     * @return the packet ID of the compressed frame marker.
+     */
+    private static int compressedId() {
+        return Ws2D.getRegistry().getDispatcher().getPacketData(BPacketCompressed.class).id;
+    }
+    
+    /**
+     * Writes a buffer to the socket as a single binary frame. Ownership of the
+     * buffer is passed to the socket, which releases it once it has been written.
      * 
-     * @return the packet data for the specified packet.
+     * @param socket the socket to write to.
+     * @param data the frame data.
      */
-    private PacketData getPacketData(Packet packet) {
-        for(PacketData pd : Ws2D.getRegistry().getRegisteredPackets()) {
-            if(packet.getClass().equals(pd.packetClass))
-                return pd;
+    private static void writeFrame(ServerWebSocket socket, ByteBuf data) {
+        // setBinaryData does not wrap the buffer as unreleasable, unlike
+        // ServerWebSocket.write, so Netty returns it to the pool after flushing
+        WebSocketFrameImpl frame = new WebSocketFrameImpl(FrameType.BINARY);
+        frame.setBinaryData(data);
+        try {
+            socket.writeFrame(frame);
+        }catch(RuntimeException ex) {
+            data.release();
+            throw ex;
         }
-        return null;
     }
 }
@@ -0,0 +1,238 @@
+package ws2d.core.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the packets that are waiting to be sent to a single client. When packet
+ * batching is enabled, packets sent during a tick are appended to a bundle which
+ * is written to the client as one frame at the end of the tick. Conflated packets
+ * are held by key until the end of the tick, and a newer packet with the same key
+ * replaces one that has not been sent yet. Frames that could not be written
+ * because the client is slow are held until its socket drains. All methods of
+ * this class are thread safe.
+ * 
+ * @author Ian
+ */
+public final class OutboundQueue {
+    /**
+     * The bundle being built, or <code>null</code> if no packets are queued.
+     */
+    private ByteBuf bundle;
+    /**
+     * The number of packets in the bundle.
+     */
+    private int count;
+    /**
+     * The conflated packets waiting to be sent, in the order their keys were first
+     * queued.
+     */
+    private final Map<Long, ByteBuf> conflated;
+    /**
+     * The number of bytes in the conflated packets.
+     */
+    private int conflatedBytes;
+    /**
+     * The frames held while the client is slow, in the order they were sent.
+     */
+    private final ArrayDeque<ByteBuf> held;
+    /**
+     * The number of bytes in the held frames.
+     */
+    private int heldBytes;
+    /**
+     * Whether or not the client has disconnected.
+     */
+    private boolean closed;
+    
+    /**
+     * The largest packet, excluding its length prefix, that can be placed in a bundle.
+     */
+    static final int MAX_BUNDLED_SIZE = 0xFFFF;
+    /**
+     * The size at which a bundle is sent without waiting for the end of the tick.
+     */
+    private static final int MAX_BUNDLE_SIZE = 0x10000;
+    /**
+     * The initial capacity of a bundle.
+     */
+    private static final int INITIAL_BUNDLE_CAPACITY = 512;
+    
+    /**
+     * Constructs a new instance of <code>OutboundQueue</code>.
+     */
+    public OutboundQueue() {
+        this.bundle = null;
+        this.count = 0;
+        this.conflated = new LinkedHashMap<>();
+        this.conflatedBytes = 0;
+        this.held = new ArrayDeque<>();
+        this.heldBytes = 0;
+        this.closed = false;
+    }
+    
+    /**
+     * Appends an encoded packet to the bundle. The packet buffer is not released.
+     * If the bundle has grown past its maximum size it is removed from the queue
+     * and returned so that the caller can send it right away.
+     * 
+     * @param packet the encoded packet, at most <code>MAX_BUNDLED_SIZE</code> bytes.
+     * @param bundleId the packet ID of the bundle packet.
+     * @param alloc the allocator for new bundles.
+     * @return a full bundle that must be sent, or <code>null</code>.
+     */
+    synchronized ByteBuf append(ByteBuf packet, int bundleId, ByteBufAllocator alloc) {
+        if(closed)
+            return null;
+        int length = packet.readableBytes();
+        if(bundle == null) {
+            bundle = alloc.heapBuffer(Math.max(INITIAL_BUNDLE_CAPACITY, length + 7));
+            PacketWriter.writeVarInt(bundle, bundleId);
+        }
+        bundle.writeShort(length);
+        bundle.writeBytes(packet, packet.readerIndex(), length);
+        ++ count;
+        return bundle.readableBytes() >= MAX_BUNDLE_SIZE ? drain() : null;
+    }
+    
+    /**
+     * Removes the current bundle from the queue.
+     * 
+     * @return the bundle, or <code>null</code> if no packets are queued.
+     */
+    synchronized ByteBuf drain() {
+        ByteBuf b = bundle;
+        bundle = null;
+        count = 0;
+        return b;
+    }
+    
+    /**
+     * Queues an encoded packet under a conflation key, replacing and releasing
+     * any unsent packet with the same key. Ownership of the packet buffer is passed
+     * to the queue.
+     * 
+     * @param key the conflation key.
+     * @param packet the encoded packet.
+     */
+    synchronized void conflate(long key, ByteBuf packet) {
+        if(closed) {
+            packet.release();
+            return;
+        }
+        ByteBuf previous = conflated.put(key, packet);
+        conflatedBytes += packet.readableBytes();
+        if(previous != null) {
+            conflatedBytes -= previous.readableBytes();
+            previous.release();
+        }
+    }
+    
+    /**
+     * Removes the oldest conflated packet from the queue. Ownership of the packet
+     * buffer is passed to the caller.
+     * 
+     * @return the encoded packet, or <code>null</code> if no conflated packets are
+     * queued.
+     */
+    synchronized ByteBuf pollConflated() {
+        if(conflated.isEmpty())
+            return null;
+        Iterator<ByteBuf> it = conflated.values().iterator();
+        ByteBuf packet = it.next();
+        it.remove();
+        conflatedBytes -= packet.readableBytes();
+        return packet;
+    }
+    
+    /**
+     * Returns whether or not any conflated packets are queued.
+     * 
+     * @return <code>true</code>, if conflated packets are queued, <code>false</code>
+     * otherwise.
+     */
+    synchronized boolean hasConflated() {
+        return !conflated.isEmpty();
+    }
+    
+    /**
+     * Holds a frame until the client's socket drains. Ownership of the frame is
+     * passed to the queue.
+     * 
+     * @param frame the frame.
+     */
+    synchronized void hold(ByteBuf frame) {
+        if(closed) {
+            frame.release();
+            return;
+        }
+        held.add(frame);
+        heldBytes += frame.readableBytes();
+    }
+    
+    /**
+     * Removes the oldest held frame from the queue. Ownership of the frame is
+     * passed to the caller.
+     * 
+     * @return the frame, or <code>null</code> if no frames are held.
+     */
+    synchronized ByteBuf pollHeld() {
+        ByteBuf frame = held.poll();
+        if(frame != null)
+            heldBytes -= frame.readableBytes();
+        return frame;
+    }
+    
+    /**
+     * Returns whether or not any frames are held, in which case later frames must
+     * be held as well so that they are sent in order.
+     * 
+     * @return <code>true</code>, if frames are held, <code>false</code> otherwise.
+     */
+    synchronized boolean isHolding() {
+        return !held.isEmpty();
+    }
+    
+    /**
+     * Releases any queued packets and rejects any that are queued afterwards. This
+     * is called once the client disconnects.
+     */
+    public synchronized void close() {
+        closed = true;
+        if(bundle != null) {
+            bundle.release();
+            bundle = null;
+        }
+        count = 0;
+        conflated.values().forEach(ByteBuf::release);
+        conflated.clear();
+        conflatedBytes = 0;
+        held.forEach(ByteBuf::release);
+        held.clear();
+        heldBytes = 0;
+    }
+    
+    /**
+     * Returns the number of packets waiting to be sent, including conflated packets.
+     * Each held frame is counted as one packet.
+     * 
+     * @return the number of queued packets.
+     */
+    public synchronized int size() {
+        return count + conflated.size() + held.size();
+    }
+    
+    /**
+     * Returns the number of bytes waiting to be sent, including conflated packets
+     * and held frames.
+     * 
+     * @return the number of queued bytes.
+     */
+    public synchronized int getQueuedBytes() {
+        return (bundle == null ? 0 : bundle.readableBytes()) + conflatedBytes + heldBytes;
+    }
+}
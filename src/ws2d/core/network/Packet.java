@@ -3,9 +3,16 @@ package ws2d.core.network;
 import stg.buffer.ByteBuffer;
 
 /**
- * The description of all packets that be registered for the network system. Both
- * methods of this interface default to do nothing due to that fact that some packets
- * will not need those methods due to their origin or destination.
+ * The description of all packets that be registered for the network system. The
+ * buffer methods of this interface default to do nothing due to that fact that some
+ * packets will not need those methods due to their origin or destination.
+ * <p>
+ * Inbound packets are read through {@link #deserialize(PacketReader)}, which reads
+ * straight from the received frame. By default it copies the frame into a
+ * <code>ByteBuffer</code> and calls {@link #deserialize(ByteBuffer)}, so packets
+ * only need to override it to avoid that copy. Likewise, outbound packets are
+ * written through {@link #serialize(PacketWriter)}, which defaults to serializing
+ * into a <code>ByteBuffer</code> and copying the result.
  * 
  * @author Ian
  */
@@ -17,10 +24,39 @@ public interface Packet {
      */
     default void serialize(ByteBuffer buffer) { }
     
+    /**
+     * Serializes this packet instance to a packet writer.
+     * 
+     * @param writer the writer to serialize to.
+     */
+    default void serialize(PacketWriter writer) {
+        ByteBuffer buffer = new ByteBuffer();
+        serialize(buffer);
+        if(!buffer.isEmpty())
+            writer.writeBytes(buffer.toArray());
+    }
+    
     /**
      * Deserializes the packet from a buffer if possible.
      * 
      * @param buffer the buffer to deserialize from.
      */
     default void deserialize(ByteBuffer buffer) { }
+    
+    /**
+     * Deserializes the packet from a packet reader. The reader is only valid until
+     * this method returns.
+     * 
+     * @param reader the reader to deserialize from.
+     */
+    default void deserialize(PacketReader reader) {
+        deserialize(reader.toByteBuffer());
+    }
+    
+    /**
+     * Clears the state of this packet before it is returned to its pool. This is
+     * only called for packets that are registered as pooled, and should restore
+     * every field that <code>deserialize</code> sets.
+     */
+    default void reset() { }
 }
@@ -2,7 +2,7 @@ package ws2d.core.network;
 
 /**
  * Contains metadata for a given packet type. This includes the class of the packet,
- * the handler, and the packet ID.
+ * the handler, the packet ID, and the options it was registered with.
  * 
  * @author Ian
  * @param <T> the packet type.
@@ -16,10 +16,19 @@ public final class PacketData<T extends Packet> {
      * The packet's handler.
      */
     public final PacketHandler<T> handler;
+    /**
+     * The packet's asynchronous handler, or <code>null</code> if it has a synchronous
+     * handler.
+     */
+    public final AsyncPacketHandler<T> asyncHandler;
     /**
      * The packet's ID.
      */
     public final int id;
+    /**
+     * The packet's options.
+     */
+    public final PacketOptions options;
 
     /**
      * Constructs a new instance of <code>PacketData</code> with the specified packet
@@ -30,8 +39,61 @@ public final class PacketData<T extends Packet> {
      * @param id the packet ID.
      */
     public PacketData(Class<T> packetClass, PacketHandler<T> handler, int id) {
+        this(packetClass, handler, id, PacketOptions.defaults());
+    }
+
+    /**
+     * Constructs a new instance of <code>PacketData</code> with the specified packet
+     * class, the handler, the packet ID, and the packet options.
+     * 
+     * @param packetClass the packet class.
+     * @param handler the packet handler.
+     * @param id the packet ID.
+     * @param options the packet options.
+     */
+    public PacketData(Class<T> packetClass, PacketHandler<T> handler, int id, PacketOptions options) {
         this.packetClass = packetClass;
         this.handler = handler;
+        this.asyncHandler = null;
         this.id = id;
+        this.options = options;
+    }
+
+    /**
+     * Constructs a new instance of <code>PacketData</code> with the specified packet
+     * class, the asynchronous handler, the packet ID, and the packet options.
+     * 
+     * @param packetClass the packet class.
+     * @param asyncHandler the asynchronous packet handler.
+     * @param id the packet ID.
+     * @param options the packet options.
+     */
+    public PacketData(Class<T> packetClass, AsyncPacketHandler<T> asyncHandler, int id, PacketOptions options) {
+        this.packetClass = packetClass;
+        this.handler = null;
+        this.asyncHandler = asyncHandler;
+        this.id = id;
+        this.options = options;
+    }
+
+    /**
+     * Returns whether or not the packet has a handler, and can therefore be received.
+     * 
+     * @return <code>true</code>, if the packet has a handler, <code>false</code>
+     * otherwise.
+     */
+    public boolean isHandled() {
+        return handler != null || asyncHandler != null;
+    }
+
+    /**
+     * Returns whether or not the packet is handled outside the thread that received
+     * it, either because its handler is asynchronous or because it blocks.
+     * 
+     * @return <code>true</code>, if the packet is handled asynchronously,
+     * <code>false</code> otherwise.
+     */
+    public boolean isAsync() {
+        return asyncHandler != null || options.isBlocking();
     }
 }
@@ -0,0 +1,282 @@
+package ws2d.core.network;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The frozen form of the registered packets. This class is built once initialization
+ * has finished, and provides constant time lookups of packet data by ID and by
+ * class, as well as reflection-free instantiation of inbound packets.
+ * 
+ * @author Ian
+ */
+public final class PacketDispatcher {
+    /**
+     * The packet data indexed by packet ID.
+     */
+    private final PacketData<Packet>[] packets;
+    /**
+     * The packet factories indexed by packet ID. An element is <code>null</code>
+     * if the packet has no accessible default constructor.
+     */
+    private final Supplier<Packet>[] factories;
+    /**
+     * Maps packet classes to their packet data.
+     */
+    private final ClassValue<PacketData<Packet>> classData;
+    /**
+     * The largest serialized size seen for each packet ID.
+     */
+    private final int[] sizeHints;
+    /**
+     * The packet pools indexed by packet ID. An element is <code>null</code> if the
+     * packet is not pooled.
+     */
+    private final PacketPool<Packet>[] pools;
+    /**
+     * The traffic counts indexed by packet ID.
+     */
+    private final PacketStats[] stats;
+    
+    /**
+     * The lookup used to resolve packet constructors.
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    /**
+     * The type of the factory constructor handles.
+     */
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Packet.class);
+    /**
+     * The initial size hint for every packet type.
+     */
+    private static final int DEFAULT_SIZE_HINT = 32;
+    /**
+     * The largest size hint that will be recorded.
+     */
+    private static final int MAX_SIZE_HINT = 65536;
+    
+    /**
+     * Constructs a new instance of <code>PacketDispatcher</code> from the specified
+     * registered packets. The ID of each packet must match its index in the list.
+     * 
+     * @param registered the registered packets.
+     * @param debugPools whether or not packet pools track leases to detect leaks.
+     */
+    public PacketDispatcher(List<PacketData<Packet>> registered, boolean debugPools) {
+        this.packets = registered.toArray(newArray(PacketData.class, registered.size()));
+        this.factories = newArray(Supplier.class, packets.length);
+        this.sizeHints = new int[packets.length];
+        this.pools = newArray(PacketPool.class, packets.length);
+        this.stats = new PacketStats[packets.length];
+        Arrays.fill(sizeHints, DEFAULT_SIZE_HINT);
+        for(int i = 0;i < packets.length;++ i) {
+            PacketData<Packet> pd = packets[i];
+            stats[i] = new PacketStats();
+            factories[i] = createFactory(pd.packetClass);
+            if(factories[i] != null && pd.options.isPooled())
+                pools[i] = new PacketPool<>(pd.packetClass, factories[i], pd.options.getPoolCapacity(), debugPools);
+        }
+        this.classData = new ClassValue<PacketData<Packet>>() {
+            @Override
+            protected PacketData<Packet> computeValue(Class<?> type) {
+                for(PacketData<Packet> pd : packets) {
+                    if(type.equals(pd.packetClass))
+                        return pd;
+                }
+                return null;
+            }
+        };
+    }
+    
+    /**
+     * Returns the number of registered packets.
+     * 
+     * @return the number of registered packets.
+     */
+    public int size() {
+        return packets.length;
+    }
+    
+    /**
+     * Gets the packet data for the specified packet ID.
+     * 
+     * @param id the packet ID.
+     * @return the packet data, or <code>null</code> if the ID is not registered.
+     */
+    public PacketData<Packet> getPacketData(int id) {
+        if(id < 0 || id >= packets.length)
+            return null;
+        return packets[id];
+    }
+    
+    /**
+     * Gets the packet data for the specified packet class.
+     * 
+     * @param packetClass the packet class.
+     * @return the packet data, or <code>null</code> if the class is not registered.
+     */
+    public PacketData<Packet> getPacketData(Class<?> packetClass) {
+        return classData.get(packetClass);
+    }
+    
+    /**
+     * Gets the packet data for a specified instantiated packet.
+     * 
+     * @param packet the packet to retrieve data for.
+     * @return the packet data, or <code>null</code> if the packet is not registered.
+     */
+    public PacketData<Packet> getPacketData(Packet packet) {
+        return classData.get(packet.getClass());
+    }
+    
+    /**
+     * Creates a new instance of the packet with the specified ID. If the packet is
+     * pooled the instance is taken from its pool, and should be passed to
+     * {@link #release(int, Packet)} once it is no longer used.
+     * 
+     * @param id the packet ID.
+     * @return a packet instance, or <code>null</code> if the ID is not registered
+     * or the packet cannot be instantiated.
+     */
+    public Packet instantiate(int id) {
+        if(id < 0 || id >= factories.length || factories[id] == null)
+            return null;
+        if(pools[id] != null)
+            return pools[id].acquire();
+        return factories[id].get();
+    }
+    
+    /**
+     * Returns an instance created by {@link #instantiate(int)} to its pool. This
+     * does nothing if the packet is not pooled.
+     * 
+     * @param id the packet ID.
+     * @param packet the packet instance.
+     */
+    public void release(int id, Packet packet) {
+        if(pools[id] != null)
+            pools[id].release(packet);
+    }
+    
+    /**
+     * Reports every pooled packet that has not been released within the specified
+     * time. This does nothing unless the pools were created in debug mode.
+     * 
+     * @param maxAge the time in milliseconds after which a packet is considered leaked.
+     * @return the number of leaked packets found.
+     */
+    public int checkLeaks(long maxAge) {
+        int leaked = 0;
+        for(PacketPool<Packet> pool : pools) {
+            if(pool != null)
+                leaked += pool.checkLeaks(maxAge);
+        }
+        return leaked;
+    }
+    
+    /**
+     * Returns the expected serialized size of the packet with the specified ID,
+     * including the packet ID.
+     * 
+     * @param id the packet ID.
+     * @return the expected serialized size in bytes.
+     */
+    public int getSizeHint(int id) {
+        return sizeHints[id];
+    }
+    
+    /**
+     * Records the serialized size of a packet so that later packets of the same
+     * type are allocated with enough room. Concurrent updates may be lost, which
+     * only results in a slightly smaller hint.
+     * 
+     * @param id the packet ID.
+     * @param size the serialized size in bytes.
+     */
+    public void recordSize(int id, int size) {
+        if(size > sizeHints[id])
+            sizeHints[id] = Math.min(size, MAX_SIZE_HINT);
+    }
+    
+    /**
+     * Returns the traffic counts of the packet with the specified ID.
+     * 
+     * @param id the packet ID.
+     * @return the packet's traffic counts.
+     */
+    public PacketStats getStats(int id) {
+        return stats[id];
+    }
+    
+    /**
+     * Creates an array of a generic type, which cannot be created directly. The
+     * component type must be the erasure of the element type.
+     * 
+     * @param <T> the element type.
+     * @param componentType the erased element type.
+     * @param length the length of the array.
+     * @return the new array.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> componentType, int length) {
+        return (T[])Array.newInstance(componentType, length);
+    }
+    
+    /**
+     * Creates a factory for the specified packet class using its public default
+     * constructor. A lambda is spun when the packet class is visible to Ws2D's
+     * class loader; packets loaded from the game jar fall back to invoking the
+     * constructor handle directly.
+     * 
+     * @param packetClass the packet class.
+     * @return the packet factory, or <code>null</code> if the packet has no accessible
+     * default constructor.
+     */
+    private static Supplier<Packet> createFactory(Class<? extends Packet> packetClass) {
+        MethodHandle constructor;
+        try {
+            constructor = LOOKUP.findConstructor(packetClass, MethodType.methodType(void.class));
+        }catch(NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+        if(isVisible(packetClass)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), constructor, MethodType.methodType(packetClass));
+                return (Supplier<Packet>)site.getTarget().invoke();
+            }catch(Throwable t) { }
+        }
+        final MethodHandle handle = constructor.asType(FACTORY_TYPE);
+        return () -> {
+            try {
+                return (Packet)handle.invokeExact();
+            }catch(RuntimeException | Error ex) {
+                throw ex;
+            }catch(Throwable t) {
+                throw new RuntimeException(t);
+            }
+        };
+    }
+    
+    /**
+     * Returns whether or not the specified class can be resolved by name from
+     * Ws2D's class loader, which is required for a spun lambda to link against it.
+     * 
+     * @param type the class to check.
+     * @return <code>true</code>, if the class is visible, <code>false</code> otherwise.
+     */
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, PacketDispatcher.class.getClassLoader()) == type;
+        }catch(ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ws2d.core.network;
+
+/**
+ * Contains the optional settings for a packet type that are specified when it is
+ * registered. A packet registered without options uses the defaults returned by
+ * {@link #defaults()}. Options should not be modified once they have been passed
+ * to the registry.
+ * 
+ * @author Ian
+ */
+public final class PacketOptions {
+    /**
+     * The number of idle instances kept by the packet pool, or <code>0</code> if
+     * the packet is not pooled.
+     */
+    private int poolCapacity;
+    /**
+     * The number of packets of this type each client may send per second, or
+     * <code>0</code> if there is no limit.
+     */
+    private int rateLimit;
+    /**
+     * The number of packets of this type each client may send in a burst.
+     */
+    private int rateBurst;
+    /**
+     * Whether or not the handler of this packet blocks.
+     */
+    private boolean blocking;
+    /**
+     * Whether or not this packet may be dropped when the client is slow.
+     */
+    private boolean droppable;
+    
+    /**
+     * Constructs a new instance of <code>PacketOptions</code> with the default
+     * settings.
+     */
+    public PacketOptions() {
+        this.poolCapacity = 0;
+        this.rateLimit = 0;
+        this.rateBurst = 0;
+        this.blocking = false;
+        this.droppable = false;
+    }
+    
+    /**
+     * Returns a new instance of <code>PacketOptions</code> with the default settings.
+     * 
+     * @return the default packet options.
+     */
+    public static PacketOptions defaults() {
+        return new PacketOptions();
+    }
+    
+    /**
+     * Enables pooling of inbound instances of this packet with the specified number
+     * of idle instances. Pooled packets are taken from the pool before they are
+     * deserialized, and are reset with {@link Packet#reset()} and returned to the
+     * pool once their handler has finished. Handlers of pooled packets must not keep
+     * a reference to the packet after they return. If the capacity is not positive
+     * pooling is disabled.
+     * 
+     * @param capacity the maximum number of idle instances kept by the pool.
+     * @return these options.
+     */
+    public PacketOptions pooled(int capacity) {
+        this.poolCapacity = Math.max(capacity, 0);
+        return this;
+    }
+    
+    /**
+     * Enables pooling of inbound instances of this packet with a default capacity of
+     * <code>64</code> idle instances.
+     * 
+     * @return these options.
+     * @see #pooled(int)
+     */
+    public PacketOptions pooled() {
+        return pooled(64);
+    }
+    
+    /**
+     * Returns whether or not inbound instances of this packet are pooled.
+     * 
+     * @return <code>true</code>, if the packet is pooled, <code>false</code> otherwise.
+     */
+    public boolean isPooled() {
+        return poolCapacity > 0;
+    }
+    
+    /**
+     * Returns the maximum number of idle instances kept by the packet pool.
+     * 
+     * @return the pool capacity, or <code>0</code> if the packet is not pooled.
+     */
+    public int getPoolCapacity() {
+        return poolCapacity;
+    }
+    
+    /**
+     * Limits the number of packets of this type each client may send. Packets over
+     * the limit are dropped before they are deserialized, and count towards the
+     * client being paused or disconnected. If the rate is not positive there is no
+     * limit.
+     * 
+     * @param perSecond the number of packets each client may send per second.
+     * @param burst the number of packets each client may send at once.
+     * @return these options.
+     */
+    public PacketOptions rateLimit(int perSecond, int burst) {
+        this.rateLimit = Math.max(perSecond, 0);
+        this.rateBurst = Math.max(burst, 1);
+        return this;
+    }
+    
+    /**
+     * Limits the number of packets of this type each client may send, allowing a
+     * burst of one second's worth of packets.
+     * 
+     * @param perSecond the number of packets each client may send per second.
+     * @return these options.
+     * @see #rateLimit(int, int)
+     */
+    public PacketOptions rateLimit(int perSecond) {
+        return rateLimit(perSecond, perSecond);
+    }
+    
+    /**
+     * Returns the number of packets of this type each client may send per second.
+     * 
+     * @return the rate limit, or <code>0</code> if there is no limit.
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+    
+    /**
+     * Returns the number of packets of this type each client may send at once.
+     * 
+     * @return the burst size.
+     */
+    public int getRateBurst() {
+        return rateBurst;
+    }
+    
+    /**
+     * Marks the handler of this packet as blocking, such as a handler that reads
+     * from disk. Blocking handlers are run on the worker pool instead of the thread
+     * that received the packet, and their responses are written back on the event
+     * loop of the client's socket.
+     * 
+     * @return these options.
+     */
+    public PacketOptions blocking() {
+        this.blocking = true;
+        return this;
+    }
+    
+    /**
+     * Returns whether or not the handler of this packet blocks.
+     * 
+     * @return <code>true</code>, if the handler blocks, <code>false</code> otherwise.
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+    
+    /**
+     * Marks this packet as droppable. Droppable packets are not sent to a client
+     * whose socket cannot keep up, which suits packets that are soon superseded,
+     * such as position updates.
+     * 
+     * @return these options.
+     * @see SlowClientPolicy
+     */
+    public PacketOptions droppable() {
+        this.droppable = true;
+        return this;
+    }
+    
+    /**
+     * Returns whether or not this packet may be dropped when the client is slow.
+     * 
+     * @return <code>true</code>, if the packet is droppable, <code>false</code>
+     * otherwise.
+     */
+    public boolean isDroppable() {
+        return droppable;
+    }
+}
@@ -0,0 +1,159 @@
+package ws2d.core.network;
+
+import ws2d.util.BoundedQueue;
+import ws2d.util.Logger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Recycles inbound instances of a single packet type. Instances are taken from the
+ * pool before a packet is deserialized and returned once its handler has finished,
+ * so high-frequency packets do not allocate a new object per message. When the pool
+ * is empty a new instance is created, and instances returned to a full pool are
+ * left to the garbage collector.
+ * <p>
+ * In debug mode the pool also records where and when each instance was taken, so
+ * that releasing the same instance twice is reported immediately and instances
+ * that are never released can be reported by {@link #checkLeaks(long)}.
+ * 
+ * @author Ian
+ * @param <T> the packet type.
+ */
+public final class PacketPool<T extends Packet> {
+    /**
+     * The logger for packet pools.
+     */
+    private static final Logger LOG = new Logger("POOL");
+    
+    /**
+     * The pooled packet's class.
+     */
+    private final Class<T> packetClass;
+    /**
+     * Creates new instances when the pool is empty.
+     */
+    private final Supplier<T> factory;
+    /**
+     * The idle instances.
+     */
+    private final BoundedQueue<T> idle;
+    /**
+     * The instances that are currently in use, or <code>null</code> if debug mode
+     * is disabled.
+     */
+    private final Map<T, Lease> leases;
+    
+    /**
+     * Constructs a new instance of <code>PacketPool</code> for the specified packet
+     * type.
+     * 
+     * @param packetClass the packet class.
+     * @param factory the factory that creates new instances.
+     * @param capacity the maximum number of idle instances.
+     * @param debug whether or not leases are tracked.
+     */
+    public PacketPool(Class<T> packetClass, Supplier<T> factory, int capacity, boolean debug) {
+        this.packetClass = packetClass;
+        this.factory = factory;
+        this.idle = new BoundedQueue<>(capacity);
+        this.leases = debug ? new IdentityHashMap<>() : null;
+    }
+    
+    /**
+     * Takes an instance from the pool, creating one if the pool is empty.
+     * 
+     * @return a packet instance.
+     */
+    public T acquire() {
+        T packet = idle.poll();
+        if(packet == null)
+            packet = factory.get();
+        if(leases != null) {
+            synchronized(leases) {
+                leases.put(packet, new Lease());
+            }
+        }
+        return packet;
+    }
+    
+    /**
+     * Resets an instance and returns it to the pool. In debug mode an instance that
+     * is not currently taken from this pool is reported and not returned.
+     * 
+     * @param packet the packet to return.
+     */
+    public void release(T packet) {
+        if(leases != null) {
+            Lease lease;
+            synchronized(leases) {
+                lease = leases.remove(packet);
+            }
+            if(lease == null) {
+                LOG.warn("A pooled " + packetClass.getSimpleName() + " was released twice or was not taken from its pool.", new Throwable("Released here"));
+                return;
+            }
+        }
+        packet.reset();
+        idle.offer(packet);
+    }
+    
+    /**
+     * Reports every instance that has been taken from the pool for longer than the
+     * specified time without being released. This does nothing unless debug mode is
+     * enabled.
+     * 
+     * @param maxAge the time in milliseconds after which an instance is considered
+     * leaked.
+     * @return the number of leaked instances found.
+     */
+    public int checkLeaks(long maxAge) {
+        if(leases == null)
+            return 0;
+        long now = System.currentTimeMillis();
+        List<Lease> leaked = new ArrayList<>();
+        synchronized(leases) {
+            for(Lease lease : leases.values()) {
+                if(now - lease.time > maxAge)
+                    leaked.add(lease);
+            }
+        }
+        for(Lease lease : leaked)
+            LOG.warn("A pooled " + packetClass.getSimpleName() + " has not been released after " + (now - lease.time) + "ms.", lease.site);
+        return leaked.size();
+    }
+    
+    /**
+     * Returns the number of idle instances in the pool.
+     * 
+     * @return the number of idle instances.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    /**
+     * Records when and where a pooled instance was taken.
+     */
+    private static final class Lease {
+        /**
+         * The time the instance was taken.
+         */
+        final long time;
+        /**
+         * The stack trace of the code that took the instance.
+         */
+        final Throwable site;
+        
+        /**
+         * Constructs a new instance of <code>Lease</code> for the current time and
+         * call site.
+         */
+        Lease() {
+            this.time = System.currentTimeMillis();
+            this.site = new Throwable("Acquired on thread " + Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package ws2d.core.network;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import stg.buffer.ByteBuffer;
+
+/**
+ * Reads packet data directly from an inbound network buffer. The reader is a
+ * read-only view over the received frame starting at an offset, so no bytes are
+ * copied unless a packet explicitly asks for them. All multi-byte values are read
+ * in big-endian order, matching <code>stg.buffer.BufferWriter</code>.
+ * 
+ * @author Ian
+ */
+public final class PacketReader {
+    /**
+     * The buffer being read.
+     */
+    private ByteBuf buffer;
+    /**
+     * The current read index.
+     */
+    private int index;
+    /**
+     * The index after the last readable byte.
+     */
+    private int end;
+    /**
+     * The bit reader for this reader, or <code>null</code> if it has not been used.
+     */
+    private BitReader bits;
+    
+    /**
+     * Constructs a new instance of <code>PacketReader</code> with nothing to read.
+     */
+    public PacketReader() {
+        this.buffer = null;
+        this.index = 0;
+        this.end = 0;
+        this.bits = null;
+    }
+    
+    /**
+     * Points this reader at the specified region of a buffer. The buffer's reader
+     * and writer indices are not modified.
+     * 
+     * @param buffer the buffer to read.
+     * @param offset the index of the first byte to read.
+     * @param length the number of readable bytes.
+     * @return this reader.
+     */
+    PacketReader wrap(ByteBuf buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.index = offset;
+        this.end = offset + length;
+        if(bits != null)
+            bits.reset();
+        return this;
+    }
+    
+    /**
+     * Releases the reference to the current buffer so it is not retained between
+     * frames.
+     */
+    void clear() {
+        buffer = null;
+        index = end = 0;
+    }
+    
+    /**
+     * Returns a bit reader that reads from this reader. The bit reader must be
+     * aligned before any byte-aligned values are read again.
+     * 
+     * @return the bit reader.
+     */
+    public BitReader bits() {
+        if(bits == null)
+            bits = new BitReader(this);
+        return bits;
+    }
+    
+    /**
+     * Returns the index of the next byte to read in the underlying buffer.
+     * 
+     * @return the current read index.
+     */
+    int position() {
+        return index;
+    }
+    
+    /**
+     * Returns the number of bytes left to read.
+     * 
+     * @return the number of bytes left to read.
+     */
+    public int remaining() {
+        return end - index;
+    }
+    
+    /**
+     * Returns whether or not there are bytes left to read.
+     * 
+     * @return <code>true</code>, if there are bytes left, <code>false</code> otherwise.
+     */
+    public boolean isReadable() {
+        return index < end;
+    }
+    
+    /**
+     * Skips the specified number of bytes.
+     * 
+     * @param length the number of bytes to skip.
+     */
+    public void skip(int length) {
+        check(length);
+        index += length;
+    }
+    
+    /**
+     * Reads a boolean.
+     * 
+     * @return the boolean read.
+     */
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+    
+    /**
+     * Reads a byte.
+     * 
+     * @return the byte read.
+     */
+    public byte readByte() {
+        check(1);
+        return buffer.getByte(index ++);
+    }
+    
+    /**
+     * Reads a byte as an unsigned value.
+     * 
+     * @return the unsigned byte read.
+     */
+    public int readUnsignedByte() {
+        return readByte() & 0xFF;
+    }
+    
+    /**
+     * Reads a short.
+     * 
+     * @return the short read.
+     */
+    public short readShort() {
+        check(2);
+        short s = buffer.getShort(index);
+        index += 2;
+        return s;
+    }
+    
+    /**
+     * Reads an integer.
+     * 
+     * @return the integer read.
+     */
+    public int readInteger() {
+        check(4);
+        int i = buffer.getInt(index);
+        index += 4;
+        return i;
+    }
+    
+    /**
+     * Reads a long.
+     * 
+     * @return the long read.
+     */
+    public long readLong() {
+        check(8);
+        long l = buffer.getLong(index);
+        index += 8;
+        return l;
+    }
+    
+    /**
+     * Reads an unsigned variable length integer.
+     * 
+     * @return the integer read.
+     * @throws IndexOutOfBoundsException if the integer is longer than five bytes.
+     * @see PacketWriter#writeVarInt(int)
+     */
+    public int readVarInt() {
+        int value = 0;
+        for(int shift = 0;shift < 35;shift += 7) {
+            int b = readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IndexOutOfBoundsException("Variable length integer is too long.");
+    }
+    
+    /**
+     * Reads a float.
+     * 
+     * @return the float read.
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInteger());
+    }
+    
+    /**
+     * Reads a double.
+     * 
+     * @return the double read.
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+    
+    /**
+     * Reads a null-terminated UTF-8 string.
+     * 
+     * @return the string read.
+     */
+    public String readString() {
+        int nul = buffer == null ? -1 : buffer.indexOf(index, end, (byte)0);
+        if(nul < 0)
+            throw new IndexOutOfBoundsException("Unterminated string at index " + index + ".");
+        String s = buffer.toString(index, nul - index, StandardCharsets.UTF_8);
+        index = nul + 1;
+        return s;
+    }
+    
+    /**
+     * Reads the specified number of bytes as a read-only view of the underlying
+     * buffer. The view is only valid while the packet is being deserialized, since
+     * the frame it views may be released as soon as <code>deserialize</code>
+     * returns, before the packet is handled. To use the bytes later, such as from
+     * the packet handler, copy them, or <code>retain</code> the view and release it
+     * once it is no longer needed.
+     * 
+     * @param length the number of bytes to read.
+     * @return a read-only view of the bytes.
+     */
+    public ByteBuf readSlice(int length) {
+        check(length);
+        ByteBuf slice = buffer.slice(index, length).asReadOnly();
+        index += length;
+        return slice;
+    }
+    
+    /**
+     * Reads bytes into the specified array until it is full.
+     * 
+     * @param dest the destination array.
+     */
+    public void readBytes(byte[] dest) {
+        readBytes(dest, 0, dest.length);
+    }
+    
+    /**
+     * Reads the specified number of bytes into an array.
+     * 
+     * @param dest the destination array.
+     * @param offset the index in the array to start writing at.
+     * @param length the number of bytes to read.
+     */
+    public void readBytes(byte[] dest, int offset, int length) {
+        check(length);
+        buffer.getBytes(index, dest, offset, length);
+        index += length;
+    }
+    
+    /**
+     * Copies the remaining bytes into a new <code>stg.buffer.ByteBuffer</code>
+     * and marks them as read. This serves as the adapter for packets that deserialize
+     * from a <code>ByteBuffer</code>.
+     * 
+     * @return a byte buffer of the remaining bytes.
+     */
+    public ByteBuffer toByteBuffer() {
+        byte[] bytes = new byte[remaining()];
+        readBytes(bytes);
+        return new ByteBuffer(bytes);
+    }
+    
+    /**
+     * Ensures that the specified number of bytes can be read.
+     * 
+     * @param length the number of bytes.
+     */
+    private void check(int length) {
+        if(length < 0 || length > end - index)
+            throw new IndexOutOfBoundsException("Attempted to read " + length + " bytes with " + (end - index) + " remaining.");
+    }
+}
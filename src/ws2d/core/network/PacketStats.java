@@ -0,0 +1,97 @@
+package ws2d.core.network;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the packets of a single type that were received and sent, and their
+ * serialized sizes. The counters are striped, so the event loops and the game
+ * loop can record into them at the same time without contending or allocating.
+ * 
+ * @author Ian
+ */
+public final class PacketStats {
+    /**
+     * The number of packets received.
+     */
+    private final LongAdder received;
+    /**
+     * The number of bytes received.
+     */
+    private final LongAdder receivedBytes;
+    /**
+     * The number of packets sent.
+     */
+    private final LongAdder sent;
+    /**
+     * The number of bytes sent.
+     */
+    private final LongAdder sentBytes;
+    
+    /**
+     * Constructs a new instance of <code>PacketStats</code> with every count at
+     * <code>0</code>.
+     */
+    public PacketStats() {
+        this.received = new LongAdder();
+        this.receivedBytes = new LongAdder();
+        this.sent = new LongAdder();
+        this.sentBytes = new LongAdder();
+    }
+    
+    /**
+     * Records a packet that was received from a client.
+     * 
+     * @param bytes the size of the packet in bytes, including the packet ID.
+     */
+    public void recordReceived(int bytes) {
+        received.increment();
+        receivedBytes.add(bytes);
+    }
+    
+    /**
+     * Records a packet that was sent to a client.
+     * 
+     * @param bytes the serialized size of the packet in bytes, including the packet
+     * ID, before it is bundled or compressed.
+     */
+    public void recordSent(int bytes) {
+        sent.increment();
+        sentBytes.add(bytes);
+    }
+    
+    /**
+     * Returns the number of packets received.
+     * 
+     * @return the number of packets received.
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+    
+    /**
+     * Returns the number of bytes received.
+     * 
+     * @return the number of bytes received.
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+    
+    /**
+     * Returns the number of packets sent.
+     * 
+     * @return the number of packets sent.
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+    
+    /**
+     * Returns the number of bytes sent.
+     * 
+     * @return the number of bytes sent.
+     */
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+}
@@ -0,0 +1,209 @@
+package ws2d.core.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Writes packet data directly into an outbound network buffer. The buffer is taken
+ * from Netty's pooled allocator by the <code>NetworkHandler</code> and handed to
+ * the socket once the packet is serialized, so no intermediate arrays are created.
+ * All multi-byte values are written in big-endian order, matching
+ * <code>stg.buffer.BufferWriter</code>.
+ * 
+ * @author Ian
+ */
+public final class PacketWriter {
+    /**
+     * The buffer being written to.
+     */
+    private ByteBuf buffer;
+    /**
+     * The bit writer for this writer, or <code>null</code> if it has not been used.
+     */
+    private BitWriter bits;
+    
+    /**
+     * Constructs a new instance of <code>PacketWriter</code> with no target buffer.
+     */
+    PacketWriter() {
+        this.buffer = null;
+        this.bits = null;
+    }
+    
+    /**
+     * Points this writer at the specified buffer.
+     * 
+     * @param buffer the buffer to write to.
+     * @return this writer.
+     */
+    PacketWriter wrap(ByteBuf buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+    
+    /**
+     * Releases the reference to the current buffer so it is not retained between
+     * packets.
+     */
+    void clear() {
+        buffer = null;
+        if(bits != null)
+            bits.reset();
+    }
+    
+    /**
+     * Writes any bits left in the bit writer.
+     */
+    void flushBits() {
+        if(bits != null)
+            bits.flush();
+    }
+    
+    /**
+     * Returns a bit writer that writes to this writer. The bit writer must be
+     * flushed before any byte-aligned values are written again.
+     * 
+     * @return the bit writer.
+     */
+    public BitWriter bits() {
+        if(bits == null)
+            bits = new BitWriter(this);
+        return bits;
+    }
+    
+    /**
+     * Returns the number of bytes written to the current buffer.
+     * 
+     * @return the number of bytes written.
+     */
+    public int size() {
+        return buffer.readableBytes();
+    }
+    
+    /**
+     * Writes a boolean.
+     * 
+     * @param b the boolean to write.
+     */
+    public void writeBoolean(boolean b) {
+        buffer.writeByte(b ? 1 : 0);
+    }
+    
+    /**
+     * Writes a byte. Only the lowest eight bits of the value are written.
+     * 
+     * @param b the byte to write.
+     */
+    public void writeByte(int b) {
+        buffer.writeByte(b);
+    }
+    
+    /**
+     * Writes a short. Only the lowest sixteen bits of the value are written.
+     * 
+     * @param s the short to write.
+     */
+    public void writeShort(int s) {
+        buffer.writeShort(s);
+    }
+    
+    /**
+     * Writes an integer.
+     * 
+     * @param i the integer to write.
+     */
+    public void writeInteger(int i) {
+        buffer.writeInt(i);
+    }
+    
+    /**
+     * Writes a long.
+     * 
+     * @param l the long to write.
+     */
+    public void writeLong(long l) {
+        buffer.writeLong(l);
+    }
+    
+    /**
+     * Writes an unsigned variable length integer, which takes one byte for values
+     * below <code>128</code> and one more byte for each further seven bits. Packet
+     * IDs are written in this format.
+     * 
+     * @param i the integer to write.
+     */
+    public void writeVarInt(int i) {
+        writeVarInt(buffer, i);
+    }
+    
+    /**
+     * Writes an unsigned variable length integer to a buffer.
+     * 
+     * @param buffer the buffer to write to.
+     * @param i the integer to write.
+     */
+    static void writeVarInt(ByteBuf buffer, int i) {
+        while((i & ~0x7F) != 0) {
+            buffer.writeByte((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        buffer.writeByte(i);
+    }
+    
+    /**
+     * Writes a float.
+     * 
+     * @param f the float to write.
+     */
+    public void writeFloat(float f) {
+        buffer.writeInt(Float.floatToRawIntBits(f));
+    }
+    
+    /**
+     * Writes a double.
+     * 
+     * @param d the double to write.
+     */
+    public void writeDouble(double d) {
+        buffer.writeLong(Double.doubleToRawLongBits(d));
+    }
+    
+    /**
+     * Writes a null-terminated UTF-8 string.
+     * 
+     * @param s the string to write.
+     */
+    public void writeString(String s) {
+        ByteBufUtil.writeUtf8(buffer, s);
+        buffer.writeByte(0);
+    }
+    
+    /**
+     * Writes all of the bytes in an array.
+     * 
+     * @param bytes the bytes to write.
+     */
+    public void writeBytes(byte[] bytes) {
+        buffer.writeBytes(bytes);
+    }
+    
+    /**
+     * Writes the specified range of bytes in an array.
+     * 
+     * @param bytes the bytes to write.
+     * @param offset the index of the first byte to write.
+     * @param length the number of bytes to write.
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        buffer.writeBytes(bytes, offset, length);
+    }
+    
+    /**
+     * Writes the readable bytes of a buffer without modifying its reader index.
+     * 
+     * @param bytes the buffer to write.
+     */
+    public void writeBytes(ByteBuf bytes) {
+        buffer.writeBytes(bytes, bytes.readerIndex(), bytes.readableBytes());
+    }
+}
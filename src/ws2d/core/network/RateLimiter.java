@@ -0,0 +1,125 @@
+package ws2d.core.network;
+
+import ws2d.init.Config;
+import ws2d.util.TokenBucket;
+
+/**
+ * Limits the rate of inbound packets from a single client. Every packet takes a
+ * token from the client's bucket, and packets whose type was registered with a
+ * rate limit also take a token from the client's bucket for that type. A dropped
+ * packet takes no tokens, so a client flooding a limited packet type does not use
+ * up its budget for other types. Packets are checked using only their ID, before
+ * anything is instantiated or deserialized.
+ * <p>
+ * Each second in which a client has packets dropped counts as a strike, and strikes
+ * are forgotten after ten seconds without one. A rate limiter belongs to a single
+ * socket and is only used on that socket's event loop, so it is not thread safe.
+ * 
+ * @author Ian
+ */
+final class RateLimiter {
+    /**
+     * The dispatcher used to look up the rate limit of each packet type.
+     */
+    private final PacketDispatcher dispatcher;
+    /**
+     * The bucket for every packet, or <code>null</code> if there is no overall limit.
+     */
+    private final TokenBucket overall;
+    /**
+     * The bucket for each packet type, created when a packet of that type is first
+     * received.
+     */
+    private final TokenBucket[] types;
+    /**
+     * The number of recent strikes.
+     */
+    private int strikes;
+    /**
+     * The time of the last strike, from <code>System.nanoTime</code>.
+     */
+    private long lastStrike;
+    
+    /**
+     * The length of time in which any number of dropped packets count as one strike.
+     */
+    static final long STRIKE_WINDOW = 1000000000L;
+    /**
+     * The length of time without a strike after which strikes are forgotten.
+     */
+    private static final long STRIKE_RESET = 10 * STRIKE_WINDOW;
+    
+    /**
+     * Constructs a new instance of <code>RateLimiter</code> with the per-client limit
+     * of the specified configuration and the per-type limits of the registered
+     * packets.
+     * 
+     * @param config the configuration of this Ws2D instance.
+     * @param dispatcher the packet dispatcher.
+     */
+    RateLimiter(Config config, PacketDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        int rate = config.getPacketRateLimit();
+        this.overall = rate > 0 ? new TokenBucket(rate, Math.max(rate, config.getPacketRateBurst())) : null;
+        this.types = new TokenBucket[dispatcher.size()];
+        this.strikes = 0;
+        this.lastStrike = System.nanoTime() - STRIKE_RESET;
+    }
+    
+    /**
+     * Returns whether or not a packet with the specified ID is within the limits.
+     * 
+     * @param pid the packet ID.
+     * @return <code>true</code>, if the packet may be handled, <code>false</code>
+     * if it must be dropped.
+     */
+    boolean tryAcquire(int pid) {
+        long now = System.nanoTime();
+        TokenBucket bucket = getBucket(pid);
+        if(bucket != null && !bucket.tryAcquire(now))
+            return false;
+        if(overall != null && !overall.tryAcquire(now)) {
+            if(bucket != null)
+                bucket.refund();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the bucket for a packet type, creating it when a packet of that type
+     * is first received.
+     * 
+     * @param pid the packet ID.
+     * @return the bucket, or <code>null</code> if the type has no rate limit or the
+     * ID is not registered.
+     */
+    private TokenBucket getBucket(int pid) {
+        if(pid < 0 || pid >= types.length)
+            return null;
+        TokenBucket bucket = types[pid];
+        if(bucket == null) {
+            PacketOptions options = dispatcher.getPacketData(pid).options;
+            if(options.getRateLimit() <= 0)
+                return null;
+            bucket = types[pid] = new TokenBucket(options.getRateLimit(), options.getRateBurst());
+        }
+        return bucket;
+    }
+    
+    /**
+     * Records that a packet was dropped.
+     * 
+     * @return the number of recent strikes if this drop started a new strike,
+     * <code>0</code> otherwise.
+     */
+    int recordDrop() {
+        long now = System.nanoTime();
+        if(now - lastStrike < STRIKE_WINDOW)
+            return 0;
+        if(now - lastStrike >= STRIKE_RESET)
+            strikes = 0;
+        lastStrike = now;
+        return ++ strikes;
+    }
+}
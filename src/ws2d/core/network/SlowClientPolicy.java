@@ -0,0 +1,33 @@
+package ws2d.core.network;
+
+/**
+ * The ways in which the server treats a client whose socket cannot keep up with
+ * the packets sent to it. A client is slow once the bytes waiting in its socket's
+ * write queue pass the high watermark, and stays slow until they fall below the
+ * low watermark. Packets registered as droppable are never sent to a slow client,
+ * whatever the policy. Under every policy, a client is disconnected once the bytes
+ * waiting to be sent to it pass the write queue limit.
+ * 
+ * @author Ian
+ */
+public enum SlowClientPolicy {
+    /**
+     * Only droppable packets are dropped, and every other packet is still written
+     * to the socket. This does not bound the memory held for a slow client by
+     * itself, since no packet is droppable by default; only the write queue limit
+     * does.
+     */
+    DROP,
+    /**
+     * Packets are held in the client's outbound queue until the socket's write
+     * queue drains. The client is disconnected if the held packets grow past the
+     * high watermark.
+     */
+    PAUSE,
+    /**
+     * Packets are still written to the socket, but the client is disconnected once
+     * it has been slow for longer than the slow client timeout, or sooner if its
+     * queued bytes pass the write queue limit.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,197 @@
+package ws2d.core.network;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.WriteBufferWaterMark;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.impl.WebSocketImplBase;
+import io.vertx.core.net.impl.ConnectionBase;
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the write queue of a single client's socket. The watermarks are set on
+ * the socket's Netty channel, which Vert.x does not expose, so the channel is
+ * looked up once when the client connects. If the channel cannot be found the
+ * monitor falls back to <code>ServerWebSocket.writeQueueFull</code>, with a low
+ * watermark of half the high watermark, and reports no queued bytes.
+ * 
+ * @author Ian
+ */
+public final class WriteMonitor {
+    /**
+     * The client's socket.
+     */
+    private final ServerWebSocket socket;
+    /**
+     * The socket's channel, or <code>null</code> if it could not be found.
+     */
+    private final Channel channel;
+    /**
+     * The time at which the client became slow, from <code>System.nanoTime</code>,
+     * or <code>0</code> if the client is not slow.
+     */
+    private long slowSince;
+    /**
+     * The number of packets dropped because the client was slow.
+     */
+    private final AtomicLong dropped;
+    /**
+     * Whether or not the client has been disconnected for being slow.
+     */
+    private volatile boolean disconnected;
+    
+    /**
+     * The connection field of a Vert.x WebSocket.
+     */
+    private static final Field CONNECTION = field(WebSocketImplBase.class, "conn");
+    /**
+     * The channel field of a Vert.x connection.
+     */
+    private static final Field CHANNEL = field(ConnectionBase.class, "channel");
+    
+    /**
+     * Constructs a new instance of <code>WriteMonitor</code> for the specified socket.
+     * 
+     * @param socket the client's socket.
+     */
+    public WriteMonitor(ServerWebSocket socket) {
+        this.socket = socket;
+        this.channel = channel(socket);
+        this.slowSince = 0L;
+        this.dropped = new AtomicLong();
+        this.disconnected = false;
+    }
+    
+    /**
+     * Sets the watermarks of the socket's write queue.
+     * 
+     * @param low the number of bytes below which a slow client is no longer slow.
+     * @param high the number of bytes above which a client is slow.
+     */
+    void setWatermarks(int low, int high) {
+        if(channel != null)
+            channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(Math.min(low, high), high));
+        else
+            socket.setWriteQueueMaxSize(high);
+    }
+    
+    /**
+     * Returns whether or not the socket's write queue has passed the high watermark
+     * and has not yet fallen below the low watermark. A closed socket is always slow.
+     * 
+     * @return <code>true</code>, if the client is slow, <code>false</code> otherwise.
+     */
+    public boolean isSlow() {
+        if(channel != null)
+            return !channel.isWritable();
+        try {
+            return socket.writeQueueFull();
+        }catch(IllegalStateException ex) {
+            return true;
+        }
+    }
+    
+    /**
+     * Returns the number of bytes waiting in the socket's write queue.
+     * 
+     * @return the number of queued bytes, or <code>0</code> if they cannot be measured.
+     */
+    public long getQueuedBytes() {
+        if(channel == null)
+            return 0L;
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0L : buffer.totalPendingWriteBytes();
+    }
+    
+    /**
+     * Returns the number of packets that were dropped because the client was slow.
+     * 
+     * @return the number of dropped packets.
+     */
+    public long getDroppedPackets() {
+        return dropped.get();
+    }
+    
+    /**
+     * Records that a packet was dropped because the client was slow.
+     */
+    void recordDrop() {
+        dropped.incrementAndGet();
+    }
+    
+    /**
+     * Updates how long the client has been slow. This is only called on the game
+     * loop.
+     * 
+     * @param now the current time, from <code>System.nanoTime</code>.
+     * @return the number of nanoseconds the client has been slow for, or
+     * <code>-1</code> if it is not slow.
+     */
+    long updateSlow(long now) {
+        if(!isSlow()) {
+            slowSince = 0L;
+            return -1L;
+        }
+        if(slowSince == 0L)
+            slowSince = now;
+        return now - slowSince;
+    }
+    
+    /**
+     * Records that the client is being disconnected for being slow. This is only
+     * called on the game loop.
+     * 
+     * @return <code>true</code>, if the client was not already being disconnected,
+     * <code>false</code> otherwise.
+     */
+    boolean disconnect() {
+        if(disconnected)
+            return false;
+        disconnected = true;
+        return true;
+    }
+    
+    /**
+     * Returns whether or not the client is being disconnected for being slow.
+     * 
+     * @return <code>true</code>, if the client is being disconnected,
+     * <code>false</code> otherwise.
+     */
+    public boolean isDisconnected() {
+        return disconnected;
+    }
+    
+    /**
+     * Finds the Netty channel of a socket.
+     * 
+     * @param socket the socket.
+     * @return the channel, or <code>null</code> if it cannot be found.
+     */
+    private static Channel channel(ServerWebSocket socket) {
+        if(CONNECTION == null || CHANNEL == null || !(socket instanceof WebSocketImplBase))
+            return null;
+        try {
+            return (Channel)CHANNEL.get(CONNECTION.get(socket));
+        }catch(IllegalAccessException | RuntimeException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Makes a declared field accessible.
+     * 
+     * @param type the declaring class.
+     * @param name the field name.
+     * @return the field, or <code>null</code> if it cannot be accessed.
+     */
+    private static Field field(Class<?> type, String name) {
+        try {
+            Field f = type.getDeclaredField(name);
+            f.setAccessible(true);
+            return f;
+        }catch(NoSuchFieldException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ws2d.core.network.packet;
+
+import ws2d.core.network.Packet;
+
+/**
+ * Marks a frame that carries several packets. This packet is never instantiated;
+ * the network handler reads and writes bundles itself. After the bundle's packet
+ * ID, each packet is written as a big-endian unsigned short length followed by
+ * the packet's ID and data.
+ * 
+ * @author Ian
+ */
+public final class BPacketBundle implements Packet {
+    /**
+     * Hidden since bundles are handled by the network handler.
+     */
+    private BPacketBundle() { }
+}
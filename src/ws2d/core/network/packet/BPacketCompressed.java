@@ -0,0 +1,21 @@
+package ws2d.core.network.packet;
+
+import ws2d.core.network.Packet;
+
+/**
+ * Marks a frame whose contents are compressed. This packet is never instantiated;
+ * the network handler compresses outbound frames itself. After the packet ID the
+ * frame contains a raw DEFLATE stream which inflates to an ordinary frame, such
+ * as a single packet or a bundle. Without context takeover every frame is a complete
+ * stream; with context takeover the frames of a client form one continuous stream,
+ * each ending with a sync flush. If a preset dictionary is configured it is used
+ * for every stream.
+ * 
+ * @author Ian
+ */
+public final class BPacketCompressed implements Packet {
+    /**
+     * Hidden since compressed frames are handled by the network handler.
+     */
+    private BPacketCompressed() { }
+}
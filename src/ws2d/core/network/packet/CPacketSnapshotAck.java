@@ -0,0 +1,54 @@
+package ws2d.core.network.packet;
+
+import ws2d.core.network.Packet;
+import ws2d.core.network.PacketReader;
+
+/**
+ * Sent by the client when it has applied a snapshot, so that later snapshots are
+ * sent as changes to it. A sequence number of <code>-1</code> asks the server to
+ * send every object again.
+ * 
+ * @author Ian
+ */
+public class CPacketSnapshotAck implements Packet {
+    /**
+     * The sequence number of the applied snapshot.
+     */
+    private int sequence;
+    
+    /**
+     * Constructs a new instance of <code>CPacketSnapshotAck</code> with a sequence
+     * number of <code>-1</code>.
+     */
+    public CPacketSnapshotAck() {
+        this.sequence = -1;
+    }
+    
+    /**
+     * Deserializes this packet's data from a packet reader.
+     * 
+     * @param reader the reader to deserialize from.
+     */
+    @Override
+    public void deserialize(PacketReader reader) {
+        sequence = reader.readInteger();
+    }
+    
+    /**
+     * Resets this packet before it is returned to its pool.
+     */
+    @Override
+    public void reset() {
+        sequence = -1;
+    }
+    
+    /**
+     * Returns the sequence number of the applied snapshot.
+     * 
+     * @return the sequence number, or <code>-1</code> if the client needs every
+     * object.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+}
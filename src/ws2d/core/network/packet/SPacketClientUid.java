@@ -1,7 +1,7 @@
 package ws2d.core.network.packet;
 
-import stg.buffer.ByteBuffer;
 import ws2d.core.network.Packet;
+import ws2d.core.network.PacketWriter;
 
 /**
  * Sends the client their unique ID for the server.
@@ -33,12 +33,12 @@ public class SPacketClientUid implements Packet {
     }
     
     /**
-     * Serializes this packet's data to a byte buffer.
+     * Serializes this packet's data to a packet writer.
      * 
-     * @param buffer the buffer to serialize to.
+     * @param writer the writer to serialize to.
      */
     @Override
-    public void serialize(ByteBuffer buffer) {
-        buffer.append(clientUid);
+    public void serialize(PacketWriter writer) {
+        writer.writeVarInt(clientUid);
     }
 }
@@ -0,0 +1,55 @@
+package ws2d.core.network.packet;
+
+import ws2d.core.network.Packet;
+import ws2d.core.network.PacketWriter;
+import ws2d.core.replication.Snapshot;
+
+/**
+ * Sends the client the changes to the replicated objects since the latest snapshot
+ * it acknowledged. See {@link Snapshot#writeDelta(PacketWriter, Snapshot)} for
+ * the format of the data.
+ * 
+ * @author Ian
+ */
+public class SPacketSnapshot implements Packet {
+    /**
+     * The snapshot being sent.
+     */
+    private Snapshot current;
+    /**
+     * The snapshot the client has acknowledged, or <code>null</code> if the client
+     * needs every object.
+     */
+    private Snapshot baseline;
+    
+    /**
+     * Constructs a new instance of <code>SPacketSnapshot</code> with no snapshot.
+     */
+    public SPacketSnapshot() {
+        this.current = null;
+        this.baseline = null;
+    }
+    
+    /**
+     * Sets the snapshots this packet writes the difference between.
+     * 
+     * @param current the snapshot being sent.
+     * @param baseline the snapshot the client has acknowledged, or <code>null</code>.
+     * @return this packet.
+     */
+    public SPacketSnapshot set(Snapshot current, Snapshot baseline) {
+        this.current = current;
+        this.baseline = baseline;
+        return this;
+    }
+    
+    /**
+     * Serializes this packet's data to a packet writer.
+     * 
+     * @param writer the writer to serialize to.
+     */
+    @Override
+    public void serialize(PacketWriter writer) {
+        current.writeDelta(writer, baseline);
+    }
+}
@@ -0,0 +1,90 @@
+package ws2d.core.replication;
+
+import ws2d.core.network.PacketWriter;
+
+/**
+ * The types of fields that can be replicated. Every value is stored in a snapshot
+ * as the raw bits of a long, so that changes can be detected with a single
+ * comparison, and is written to the client in the same big-endian format used by
+ * <code>PacketWriter</code>.
+ * 
+ * @author Ian
+ */
+public enum FieldType {
+    /**
+     * A boolean, sent as a single byte.
+     */
+    BOOLEAN(1),
+    /**
+     * A byte.
+     */
+    BYTE(1),
+    /**
+     * A short.
+     */
+    SHORT(2),
+    /**
+     * An integer.
+     */
+    INTEGER(4),
+    /**
+     * A long.
+     */
+    LONG(8),
+    /**
+     * A single precision floating point number.
+     */
+    FLOAT(4),
+    /**
+     * A double precision floating point number.
+     */
+    DOUBLE(8);
+    
+    /**
+     * The number of bytes written for a field of this type.
+     */
+    private final int size;
+    
+    /**
+     * Constructs a new instance of <code>FieldType</code> with the specified
+     * serialized size.
+     * 
+     * @param size the number of bytes written for a field of this type.
+     */
+    private FieldType(int size) {
+        this.size = size;
+    }
+    
+    /**
+     * Returns the number of bytes written for a field of this type.
+     * 
+     * @return the serialized size in bytes.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Writes the stored bits of a field of this type.
+     * 
+     * @param writer the writer to write to.
+     * @param bits the stored bits of the field.
+     */
+    void write(PacketWriter writer, long bits) {
+        switch(this) {
+            case BOOLEAN:
+            case BYTE:
+                writer.writeByte((int)bits);
+                break;
+            case SHORT:
+                writer.writeShort((int)bits);
+                break;
+            case INTEGER:
+            case FLOAT:
+                writer.writeInteger((int)bits);
+                break;
+            default:
+                writer.writeLong(bits);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ws2d.core.replication;
+
+import ws2d.core.generic.Client;
+import ws2d.core.network.NetworkHandler;
+import ws2d.core.network.packet.SPacketSnapshot;
+import ws2d.core.server.Server;
+import ws2d.init.Config;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replicates the state of game objects to every client. Game code tracks its
+ * objects along with a schema that declares their replicated fields, and the manager
+ * captures a snapshot of every tracked object at a fixed interval. Each client is
+ * sent only the fields that changed since the latest snapshot it acknowledged,
+ * or every object if it has not acknowledged a snapshot that is still in the
+ * history, which is the case when it joins or falls too far behind.
+ * <p>
+ * All methods except those of the clients' <code>ReplicationState</code> must be
+ * called on the game loop thread.
+ * 
+ * @author Ian
+ */
+public class ReplicationManager {
+    /**
+     * The server whose clients objects are replicated to.
+     */
+    private final Server server;
+    /**
+     * The tracked objects by network ID, in ascending order of network ID.
+     */
+    private final Map<Integer, Tracked<?>> objects;
+    /**
+     * The most recent snapshots, indexed by sequence number modulo the history size.
+     */
+    private final Snapshot[] history;
+    /**
+     * The number of ticks between snapshots.
+     */
+    private final int interval;
+    /**
+     * The packet used to send each client its delta.
+     */
+    private final SPacketSnapshot packet;
+    /**
+     * The network ID of the next tracked object.
+     */
+    private int nextId;
+    /**
+     * The sequence number of the latest snapshot, or <code>-1</code> if no snapshot
+     * has been taken.
+     */
+    private volatile int sequence;
+    /**
+     * The number of ticks since the last snapshot.
+     */
+    private int ticks;
+    
+    /**
+     * Constructs a new instance of <code>ReplicationManager</code> for the specified
+     * server and configuration.
+     * 
+     * @param server the server whose clients objects are replicated to.
+     * @param config the configuration of this Ws2D instance.
+     */
+    public ReplicationManager(Server server, Config config) {
+        this.server = server;
+        this.objects = new LinkedHashMap<>();
+        this.history = new Snapshot[config.getReplicationHistory()];
+        for(int i = 0;i < history.length;++ i)
+            history[i] = new Snapshot();
+        this.interval = config.getReplicationInterval();
+        this.packet = new SPacketSnapshot();
+        this.nextId = 1;
+        this.sequence = -1;
+        this.ticks = 0;
+    }
+    
+    /**
+     * Starts replicating an object to every client.
+     * 
+     * @param object the object to replicate.
+     * @param schema the schema that declares the object's replicated fields.
+     * @param <T> the type of the object.
+     * @return the network ID of the object, which is sent to clients.
+     */
+    public <T> int track(T object, ReplicationSchema<T> schema) {
+        if(nextId == Integer.MAX_VALUE)
+            throw new IllegalStateException("The available network IDs have been exhausted.");
+        int id = nextId ++;
+        objects.put(id, new Tracked<>(object, schema));
+        return id;
+    }
+    
+    /**
+     * Stops replicating the object with the specified network ID. Clients are told
+     * to remove the object in the next snapshot.
+     * 
+     * @param id the network ID of the object.
+     * @return <code>true</code>, if the object was being replicated, <code>false</code>
+     * otherwise.
+     */
+    public boolean untrack(int id) {
+        return objects.remove(id) != null;
+    }
+    
+    /**
+     * Returns the number of tracked objects.
+     * 
+     * @return the number of tracked objects.
+     */
+    public int size() {
+        return objects.size();
+    }
+    
+    /**
+     * Returns the sequence number of the latest snapshot.
+     * 
+     * @return the latest sequence number, or <code>-1</code> if no snapshot has
+     * been taken.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Returns the snapshot with the specified sequence number if it is still in
+     * the history.
+     * 
+     * @param sequence the sequence number.
+     * @return the snapshot, or <code>null</code> if it is no longer available.
+     */
+    public Snapshot getSnapshot(int sequence) {
+        if(sequence < 0)
+            return null;
+        Snapshot snapshot = history[sequence % history.length];
+        return snapshot.getSequence() == sequence ? snapshot : null;
+    }
+    
+    /**
+     * Takes a snapshot and sends each client its delta once the snapshot interval
+     * has passed. Nothing is sent until an object has been tracked. This is called
+     * by the server once per tick.
+     */
+    public void tick() {
+        if(nextId == 1 || ++ ticks < interval)
+            return;
+        ticks = 0;
+        if(sequence == Integer.MAX_VALUE) {
+            // start over, forcing every client to resync
+            for(Snapshot snapshot : history)
+                snapshot.reset(-1);
+            server.forEachClient(client -> client.getReplicationState().resync());
+            sequence = -1;
+        }
+        final Snapshot current = history[++ sequence % history.length];
+        current.reset(sequence);
+        objects.forEach((id, tracked) -> tracked.capture(current, id));
+        final NetworkHandler net = server.getNetworkHandler();
+        server.forEachClient(client -> {
+            Snapshot baseline = getSnapshot(client.getReplicationState().getAcknowledged());
+            net.sendPacket(packet.set(current, baseline), client);
+        });
+        packet.set(null, null);
+    }
+    
+    /**
+     * A tracked object and its schema.
+     * 
+     * @param <T> the type of the object.
+     */
+    private static final class Tracked<T> {
+        /**
+         * The object.
+         */
+        final T object;
+        /**
+         * The object's schema.
+         */
+        final ReplicationSchema<T> schema;
+        
+        /**
+         * Constructs a new instance of <code>Tracked</code> with the specified object
+         * and schema.
+         * 
+         * @param object the object.
+         * @param schema the object's schema.
+         */
+        Tracked(T object, ReplicationSchema<T> schema) {
+            this.object = object;
+            this.schema = schema;
+        }
+        
+        /**
+         * Captures the object's fields into a snapshot.
+         * 
+         * @param snapshot the snapshot.
+         * @param id the object's network ID.
+         */
+        void capture(Snapshot snapshot, int id) {
+            snapshot.add(id, schema, object);
+        }
+    }
+}
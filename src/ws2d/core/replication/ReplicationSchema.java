@@ -0,0 +1,179 @@
+package ws2d.core.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Declares the replicated fields of a type of game object. Each field is read
+ * through an accessor when a snapshot is taken, and fields are sent to clients in
+ * the order they are declared. The type ID is sent whenever an object of this
+ * type is created on a client, so that the client knows which fields follow.
+ * <p>
+ * A schema should be fully declared before any object is tracked with it.
+ * 
+ * @author Ian
+ * @param <T> the type of game object.
+ */
+public final class ReplicationSchema<T> {
+    /**
+     * The maximum number of fields in a schema.
+     */
+    public static final int MAX_FIELDS = 64;
+    
+    /**
+     * The ID of this type of game object, which is sent to clients.
+     */
+    private final int typeId;
+    /**
+     * The types of the declared fields.
+     */
+    private final List<FieldType> types;
+    /**
+     * The accessors of the declared fields, which return the raw bits of each value.
+     */
+    private final List<ToLongFunction<? super T>> accessors;
+    
+    /**
+     * Constructs a new instance of <code>ReplicationSchema</code> with the specified
+     * type ID and no fields.
+     * 
+     * @param typeId the type ID, from <code>0</code> to <code>65535</code>.
+     */
+    public ReplicationSchema(int typeId) {
+        if(typeId < 0 || typeId > 0xFFFF)
+            throw new IllegalArgumentException("Invalid type ID: " + typeId);
+        this.typeId = typeId;
+        this.types = new ArrayList<>();
+        this.accessors = new ArrayList<>();
+    }
+    
+    /**
+     * Declares a boolean field.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withBoolean(Predicate<? super T> accessor) {
+        return with(FieldType.BOOLEAN, object -> accessor.test(object) ? 1 : 0);
+    }
+    
+    /**
+     * Declares a byte field. Only the lowest eight bits of the value are sent.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withByte(ToIntFunction<? super T> accessor) {
+        return with(FieldType.BYTE, object -> accessor.applyAsInt(object) & 0xFF);
+    }
+    
+    /**
+     * Declares a short field. Only the lowest sixteen bits of the value are sent.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withShort(ToIntFunction<? super T> accessor) {
+        return with(FieldType.SHORT, object -> accessor.applyAsInt(object) & 0xFFFF);
+    }
+    
+    /**
+     * Declares an integer field.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withInteger(ToIntFunction<? super T> accessor) {
+        return with(FieldType.INTEGER, object -> accessor.applyAsInt(object));
+    }
+    
+    /**
+     * Declares a long field.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withLong(ToLongFunction<? super T> accessor) {
+        return with(FieldType.LONG, accessor);
+    }
+    
+    /**
+     * Declares a float field. Double values are narrowed to floats before they are
+     * compared, so changes smaller than a float can represent are not sent.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withFloat(ToDoubleFunction<? super T> accessor) {
+        return with(FieldType.FLOAT, object -> Float.floatToRawIntBits((float)accessor.applyAsDouble(object)));
+    }
+    
+    /**
+     * Declares a double field.
+     * 
+     * @param accessor the accessor of the field.
+     * @return this schema.
+     */
+    public ReplicationSchema<T> withDouble(ToDoubleFunction<? super T> accessor) {
+        return with(FieldType.DOUBLE, object -> Double.doubleToRawLongBits(accessor.applyAsDouble(object)));
+    }
+    
+    /**
+     * Declares a field of the specified type.
+     * 
+     * @param type the field type.
+     * @param accessor the accessor, which returns the raw bits of the value.
+     * @return this schema.
+     */
+    private ReplicationSchema<T> with(FieldType type, ToLongFunction<? super T> accessor) {
+        if(types.size() == MAX_FIELDS)
+            throw new IllegalStateException("A replication schema cannot have more than " + MAX_FIELDS + " fields.");
+        types.add(type);
+        accessors.add(accessor);
+        return this;
+    }
+    
+    /**
+     * Returns the type ID of this schema.
+     * 
+     * @return the type ID.
+     */
+    public int getTypeId() {
+        return typeId;
+    }
+    
+    /**
+     * Returns the number of declared fields.
+     * 
+     * @return the number of fields.
+     */
+    public int getFieldCount() {
+        return types.size();
+    }
+    
+    /**
+     * Returns the type of the field at the specified index.
+     * 
+     * @param index the field index.
+     * @return the field type.
+     */
+    public FieldType getFieldType(int index) {
+        return types.get(index);
+    }
+    
+    /**
+     * Reads every field of an object into an array.
+     * 
+     * @param object the object to read.
+     * @param dest the array to write the raw bits of each value to.
+     * @param offset the index of the first field in the array.
+     */
+    void capture(T object, long[] dest, int offset) {
+        for(int i = 0, n = accessors.size();i < n;++ i)
+            dest[offset + i] = accessors.get(i).applyAsLong(object);
+    }
+}
@@ -0,0 +1,60 @@
+package ws2d.core.replication;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The replication state of a single client, which is the sequence number of the
+ * latest snapshot the client has acknowledged. Acknowledgements may arrive on any
+ * thread, while the state is read on the game loop.
+ * 
+ * @author Ian
+ */
+public final class ReplicationState {
+    /**
+     * The sequence number of the latest acknowledged snapshot, or <code>-1</code>
+     * if the client needs a full snapshot.
+     */
+    private final AtomicInteger acknowledged;
+    
+    /**
+     * Constructs a new instance of <code>ReplicationState</code> for a client that
+     * has not received any snapshots.
+     */
+    public ReplicationState() {
+        this.acknowledged = new AtomicInteger(-1);
+    }
+    
+    /**
+     * Records that the client has received the snapshot with the specified sequence
+     * number. Acknowledgements of snapshots older than the latest acknowledged
+     * snapshot are ignored.
+     * 
+     * @param sequence the sequence number of the received snapshot.
+     */
+    public void acknowledge(int sequence) {
+        int current;
+        do {
+            current = acknowledged.get();
+            if(sequence <= current)
+                return;
+        }while(!acknowledged.compareAndSet(current, sequence));
+    }
+    
+    /**
+     * Discards the acknowledged snapshot so that the client is sent every object
+     * in the next snapshot.
+     */
+    public void resync() {
+        acknowledged.set(-1);
+    }
+    
+    /**
+     * Returns the sequence number of the latest acknowledged snapshot.
+     * 
+     * @return the acknowledged sequence number, or <code>-1</code> if the client
+     * needs a full snapshot.
+     */
+    public int getAcknowledged() {
+        return acknowledged.get();
+    }
+}
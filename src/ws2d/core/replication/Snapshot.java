@@ -0,0 +1,216 @@
+package ws2d.core.replication;
+
+import ws2d.core.network.PacketWriter;
+import java.util.Arrays;
+
+/**
+ * The captured state of every replicated object at a single point in time. Objects
+ * are stored in ascending order of their network IDs, with the raw bits of all of
+ * their fields packed into a single array, so that two snapshots can be compared
+ * in one pass and snapshots can be reused once they leave the history.
+ * 
+ * @author Ian
+ */
+public final class Snapshot {
+    /**
+     * The sequence number of this snapshot, or <code>-1</code> if it is unused.
+     */
+    private int sequence;
+    /**
+     * The number of captured objects.
+     */
+    private int count;
+    /**
+     * The network IDs of the captured objects.
+     */
+    private int[] ids;
+    /**
+     * The schemas of the captured objects.
+     */
+    private ReplicationSchema<?>[] schemas;
+    /**
+     * The index of each object's first field in the value array.
+     */
+    private int[] offsets;
+    /**
+     * The raw bits of every captured field.
+     */
+    private long[] values;
+    /**
+     * The number of used elements in the value array.
+     */
+    private int size;
+    
+    /**
+     * The initial number of objects a snapshot has room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /**
+     * Constructs a new instance of <code>Snapshot</code> that is unused.
+     */
+    Snapshot() {
+        this.sequence = -1;
+        this.count = 0;
+        this.ids = new int[INITIAL_CAPACITY];
+        this.schemas = new ReplicationSchema<?>[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY];
+        this.values = new long[INITIAL_CAPACITY * 4];
+        this.size = 0;
+    }
+    
+    /**
+     * Removes every captured object and assigns this snapshot a new sequence number.
+     * 
+     * @param sequence the new sequence number.
+     */
+    void reset(int sequence) {
+        this.sequence = sequence;
+        Arrays.fill(schemas, 0, count, null);
+        count = size = 0;
+    }
+    
+    /**
+     * Captures the fields of an object. Objects must be added in ascending order
+     * of their network IDs.
+     * 
+     * @param id the object's network ID.
+     * @param schema the object's schema.
+     * @param object the object.
+     * @param <T> the type of the object.
+     */
+    <T> void add(int id, ReplicationSchema<T> schema, T object) {
+        if(count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            schemas = Arrays.copyOf(schemas, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        int fields = schema.getFieldCount();
+        if(size + fields > values.length)
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + fields));
+        schema.capture(object, values, size);
+        ids[count] = id;
+        schemas[count] = schema;
+        offsets[count] = size;
+        ++ count;
+        size += fields;
+    }
+    
+    /**
+     * Returns the sequence number of this snapshot.
+     * 
+     * @return the sequence number, or <code>-1</code> if this snapshot is unused.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Returns the number of objects captured in this snapshot.
+     * 
+     * @return the number of captured objects.
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Writes the difference between a baseline snapshot and this snapshot. The
+     * delta starts with the sequence numbers of this snapshot and the baseline,
+     * where a baseline of <code>-1</code> means the client must discard its state
+     * and the delta contains every object. It is followed by one record per changed
+     * object, each starting with a kind byte and the object's network ID:
+     * <ul>
+     * <li><code>1</code>: the object was created; followed by its type ID as a
+     * short and every field.</li>
+     * <li><code>2</code>: the object was updated; followed by a bit mask of the
+     * changed fields, one byte per eight fields starting at the least significant
+     * bit of the first byte, and the changed fields.</li>
+     * <li><code>3</code>: the object was removed.</li>
+     * </ul>
+     * The records are terminated by a kind byte of <code>0</code>. Objects that
+     * have not changed are not written.
+     * 
+     * @param writer the writer to write to.
+     * @param baseline the snapshot the client has acknowledged, or <code>null</code>
+     * to write every object.
+     */
+    public void writeDelta(PacketWriter writer, Snapshot baseline) {
+        writer.writeInteger(sequence);
+        writer.writeInteger(baseline == null ? -1 : baseline.sequence);
+        int i = 0, j = 0, base = baseline == null ? 0 : baseline.count;
+        while(i < count || j < base) {
+            int id = i < count ? ids[i] : Integer.MAX_VALUE;
+            int baseId = j < base ? baseline.ids[j] : Integer.MAX_VALUE;
+            if(id < baseId || (id == baseId && schemas[i] != baseline.schemas[j])) {
+                if(id == baseId) {
+                    // the ID was reused for a different type of object
+                    writeRemoved(writer, baseId);
+                    ++ j;
+                }
+                writeCreated(writer, i ++);
+            }else if(id > baseId) {
+                writeRemoved(writer, baseId);
+                ++ j;
+            }else
+                writeUpdated(writer, i ++, baseline, j ++);
+        }
+        writer.writeByte(0);
+    }
+    
+    /**
+     * Writes a record for an object that the client does not have.
+     * 
+     * @param writer the writer to write to.
+     * @param index the index of the object in this snapshot.
+     */
+    private void writeCreated(PacketWriter writer, int index) {
+        ReplicationSchema<?> schema = schemas[index];
+        writer.writeByte(1);
+        writer.writeInteger(ids[index]);
+        writer.writeShort(schema.getTypeId());
+        for(int f = 0, n = schema.getFieldCount(), offset = offsets[index];f < n;++ f)
+            schema.getFieldType(f).write(writer, values[offset + f]);
+    }
+    
+    /**
+     * Writes a record for an object that the client has, if any of its fields have
+     * changed since the baseline.
+     * 
+     * @param writer the writer to write to.
+     * @param index the index of the object in this snapshot.
+     * @param baseline the baseline snapshot.
+     * @param baseIndex the index of the object in the baseline snapshot.
+     */
+    private void writeUpdated(PacketWriter writer, int index, Snapshot baseline, int baseIndex) {
+        ReplicationSchema<?> schema = schemas[index];
+        int fields = schema.getFieldCount(), offset = offsets[index], baseOffset = baseline.offsets[baseIndex];
+        long mask = 0;
+        for(int f = 0;f < fields;++ f) {
+            if(values[offset + f] != baseline.values[baseOffset + f])
+                mask |= 1L << f;
+        }
+        if(mask == 0)
+            return;
+        writer.writeByte(2);
+        writer.writeInteger(ids[index]);
+        for(int b = 0;b < fields;b += 8)
+            writer.writeByte((int)(mask >>> b));
+        for(int f = 0;f < fields;++ f) {
+            if((mask & (1L << f)) != 0)
+                schema.getFieldType(f).write(writer, values[offset + f]);
+        }
+    }
+    
+    /**
+     * Writes a record for an object that no longer exists.
+     * 
+     * @param writer the writer to write to.
+     * @param id the object's network ID.
+     */
+    private static void writeRemoved(PacketWriter writer, int id) {
+        writer.writeByte(3);
+        writer.writeInteger(id);
+    }
+}
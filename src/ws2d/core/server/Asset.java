@@ -0,0 +1,296 @@
+package ws2d.core.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A client file held in memory, ready to be served. The contents are stored in
+ * direct memory or in a region of an <code>AssetPack</code>, together with a gzip
+ * variant, if it is smaller, so that requests are answered without reading files
+ * or compressing anything. Assets are immutable.
+ * 
+ * @author Ian
+ */
+public final class Asset {
+    /**
+     * The path of the asset relative to the client directory.
+     */
+    private final String path;
+    /**
+     * The MIME type of the asset.
+     */
+    private final String contentType;
+    /**
+     * The hex encoded content hash of the asset.
+     */
+    private final String hash;
+    /**
+     * The entity tag of the asset.
+     */
+    private final String etag;
+    /**
+     * The entity tag of the gzip variant, or <code>null</code> if there is no gzip
+     * variant.
+     */
+    private final String gzipEtag;
+    /**
+     * The contents of the asset.
+     */
+    private final Buffer identity;
+    /**
+     * The gzip compressed contents of the asset, or <code>null</code> if compressing
+     * does not make it smaller.
+     */
+    private final Buffer gzip;
+    /**
+     * Whether or not the asset is served from a fingerprinted path, whose contents
+     * never change.
+     */
+    private final boolean immutable;
+    
+    /**
+     * The number of hash bytes used in the content hash.
+     */
+    private static final int HASH_BYTES = 8;
+    /**
+     * The hex digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    /**
+     * Constructs a new instance of <code>Asset</code> from the specified file
+     * contents.
+     * 
+     * @param path the path of the asset relative to the client directory.
+     * @param data the contents of the asset.
+     */
+    public Asset(String path, byte[] data) {
+        this(path, data, wrap(data));
+    }
+    
+    /**
+     * Constructs a new instance of <code>Asset</code> from the specified file
+     * contents, which are served from a buffer that already holds them.
+     * 
+     * @param path the path of the asset relative to the client directory.
+     * @param data the contents of the asset.
+     * @param contents the buffer holding the contents, such as a region of an
+     * asset pack.
+     */
+    Asset(String path, byte[] data, Buffer contents) {
+        this.path = path;
+        this.contentType = MimeTypes.get(path);
+        this.hash = hash(data);
+        this.etag = "\"" + hash + "\"";
+        this.identity = contents;
+        byte[] compressed = MimeTypes.isCompressible(contentType) ? gzip(data) : null;
+        this.gzip = compressed != null && compressed.length < data.length ? wrap(compressed) : null;
+        this.gzipEtag = gzip == null ? null : "\"" + hash + "-gz\"";
+        this.immutable = false;
+    }
+    
+    /**
+     * Constructs a new instance of <code>Asset</code> that shares the contents of
+     * another asset under its fingerprinted path.
+     * 
+     * @param asset the asset.
+     * @param path the fingerprinted path.
+     */
+    private Asset(Asset asset, String path) {
+        this.path = path;
+        this.contentType = asset.contentType;
+        this.hash = asset.hash;
+        this.etag = asset.etag;
+        this.identity = asset.identity;
+        this.gzip = asset.gzip;
+        this.gzipEtag = asset.gzipEtag;
+        this.immutable = true;
+    }
+    
+    /**
+     * Returns a copy of this asset under its fingerprinted path, which includes
+     * the content hash. The copy shares this asset's contents.
+     * 
+     * @return the fingerprinted asset.
+     */
+    Asset fingerprinted() {
+        return new Asset(this, fingerprint(path, hash));
+    }
+    
+    /**
+     * Returns the path of the asset relative to the client directory.
+     * 
+     * @return the asset path.
+     */
+    public String getPath() {
+        return path;
+    }
+    
+    /**
+     * Returns whether or not the asset is served from a fingerprinted path. The
+     * contents of a fingerprinted path never change, so browsers may cache them
+     * forever.
+     * 
+     * @return <code>true</code>, if the asset is immutable, <code>false</code>
+     * otherwise.
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+    
+    /**
+     * Returns the MIME type of the asset.
+     * 
+     * @return the content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+    
+    /**
+     * Returns the hex encoded content hash of the asset.
+     * 
+     * @return the content hash.
+     */
+    public String getHash() {
+        return hash;
+    }
+    
+    /**
+     * Returns the strong entity tag of the asset, including its quotes.
+     * 
+     * @return the entity tag.
+     */
+    public String getETag() {
+        return etag;
+    }
+    
+    /**
+     * Returns the strong entity tag of the gzip variant, including its quotes. It
+     * differs from the entity tag of the asset, since each content coding is a
+     * different representation.
+     * 
+     * @return the entity tag, or <code>null</code> if there is no gzip variant.
+     */
+    public String getGzipETag() {
+        return gzipEtag;
+    }
+    
+    /**
+     * Returns the contents of the asset. The buffer is shared and must not be
+     * modified.
+     * 
+     * @return the contents.
+     */
+    public Buffer getContents() {
+        return identity;
+    }
+    
+    /**
+     * Returns the gzip compressed contents of the asset. The buffer is shared and
+     * must not be modified.
+     * 
+     * @return the compressed contents, or <code>null</code> if there is no gzip
+     * variant.
+     */
+    public Buffer getGzipContents() {
+        return gzip;
+    }
+    
+    /**
+     * Returns the number of bytes of memory used by the asset.
+     * 
+     * @return the size of the asset in memory.
+     */
+    public int getMemorySize() {
+        return identity.length() + (gzip == null ? 0 : gzip.length());
+    }
+    
+    /**
+     * Copies data into direct memory. The buffer cannot be released, so it can be
+     * written to any number of responses.
+     * 
+     * @param data the data.
+     * @return the buffer.
+     */
+    private static Buffer wrap(byte[] data) {
+        ByteBuf buf = Unpooled.directBuffer(data.length, data.length).writeBytes(data);
+        return Buffer.buffer(Unpooled.unreleasableBuffer(buf.asReadOnly()));
+    }
+    
+    /**
+     * Inserts a content hash into a path before the file extension, so that
+     * <code>js/client.js</code> becomes <code>js/client.&lt;hash&gt;.js</code>.
+     * 
+     * @param path the path.
+     * @param hash the content hash.
+     * @return the fingerprinted path.
+     */
+    static String fingerprint(String path, String hash) {
+        int dot = path.lastIndexOf('.');
+        if(dot <= path.lastIndexOf('/') + 1)
+            return path + "." + hash;
+        return path.substring(0, dot) + "." + hash + path.substring(dot);
+    }
+    
+    /**
+     * Computes the content hash of the specified data.
+     * 
+     * @param data the data.
+     * @return the hex encoded content hash.
+     */
+    static String hash(byte[] data) {
+        return hex(digest().digest(data));
+    }
+    
+    /**
+     * Creates the message digest used for content hashes.
+     * 
+     * @return the message digest.
+     */
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException ex) {
+            throw new InternalError(ex);
+        }
+    }
+    
+    /**
+     * Encodes the start of a digest as a content hash.
+     * 
+     * @param digest the digest.
+     * @return the hex encoded content hash.
+     */
+    static String hex(byte[] digest) {
+        char[] hex = new char[HASH_BYTES * 2];
+        for(int i = 0;i < HASH_BYTES;++ i) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+    
+    /**
+     * Compresses data with gzip at the best compression level.
+     * 
+     * @param data the data.
+     * @return the compressed data.
+     */
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+        try(GZIPOutputStream gz = new GZIPOutputStream(out) { { def.setLevel(Deflater.BEST_COMPRESSION); } }) {
+            gz.write(data);
+        }catch(IOException ex) {
+            throw new InternalError(ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,488 @@
+package ws2d.core.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import ws2d.init.Config;
+import ws2d.util.FileSystem;
+
+/**
+ * Holds every client file of the game in memory. The cache is built once from
+ * the client directory of the game jar when the game is loaded, and is never
+ * modified afterwards, so it can be read from any event loop without locking.
+ * <p>
+ * Assets may also be fingerprinted, in which case each asset other than an HTML
+ * file is also served from a path that includes its content hash. References to
+ * other assets in HTML <code>src</code> and <code>href</code> attributes and in
+ * CSS <code>url()</code> values are rewritten to the fingerprinted paths, so a
+ * browser only downloads an asset again once its contents change.
+ * <p>
+ * Before they are cached, scripts, stylesheets and HTML files may be minified,
+ * and runs of scripts included by the main HTML file may be bundled into one
+ * script. The result of these steps is saved in a cache directory under the hash
+ * of the game jar, so they only run again once the jar changes.
+ * 
+ * @author Ian
+ */
+public final class AssetCache {
+    /**
+     * The assets by path relative to the client directory.
+     */
+    private final Map<String, Asset> assets;
+    /**
+     * The fingerprinted paths by original path.
+     */
+    private final Map<String, String> fingerprints;
+    /**
+     * The pack holding the contents of the assets, or <code>null</code> if they
+     * are held in direct memory.
+     */
+    private final AssetPack pack;
+    /**
+     * The path of the main HTML file relative to the client directory.
+     */
+    private final String mainHTML;
+    /**
+     * The number of bytes of memory used by the assets.
+     */
+    private final long memorySize;
+    
+    /**
+     * Matches the <code>src</code> and <code>href</code> attributes in HTML.
+     */
+    private static final Pattern HTML_REFERENCE = Pattern.compile("(\\b(?:src|href)\\s*=\\s*)([\"'])([^\"'<>]+)\\2", Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches a run of script tags with only <code>src</code> attributes, separated
+     * by nothing but whitespace.
+     */
+    private static final Pattern SCRIPT_RUN = Pattern.compile("(?:<script\\s+src\\s*=\\s*([\"'])[^\"'<>]+\\1\\s*>\\s*</script>\\s*){2,}", Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches a script tag with only a <code>src</code> attribute.
+     */
+    private static final Pattern SCRIPT_TAG = Pattern.compile("<script\\s+src\\s*=\\s*([\"'])([^\"'<>]+)\\1\\s*>\\s*</script>", Pattern.CASE_INSENSITIVE);
+    /**
+     * The value identifying the format of processed asset cache files.
+     */
+    private static final int CACHE_MAGIC = 0x57534143;
+    /**
+     * The version of the processed asset cache file format and of the bundling
+     * rules, which is part of the name of the cache file together with the version
+     * of the minifier. It must be increased whenever either changes, so that files
+     * processed by an older version of Ws2D are not served from the cache.
+     */
+    private static final int CACHE_VERSION = 2;
+    /**
+     * Matches the <code>url()</code> values in CSS.
+     */
+    private static final Pattern CSS_REFERENCE = Pattern.compile("(\\burl\\(\\s*)([\"']?)([^\"'()]+)\\2(?=\\s*\\))", Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * Constructs a new instance of <code>AssetCache</code> with the specified assets.
+     * 
+     * @param assets the assets by path.
+     * @param fingerprints the fingerprinted paths by original path.
+     * @param pack the pack holding the contents of the assets, or <code>null</code>.
+     * @param mainHTML the path of the main HTML file.
+     */
+    private AssetCache(Map<String, Asset> assets, Map<String, String> fingerprints, AssetPack pack, String mainHTML) {
+        this.assets = assets;
+        this.fingerprints = fingerprints;
+        this.pack = pack;
+        this.mainHTML = mainHTML;
+        long size = 0;
+        for(Asset asset : assets.values()) {
+            // fingerprinted assets share their contents with the original
+            if(!asset.isImmutable())
+                size += asset.getMemorySize();
+        }
+        this.memorySize = size;
+    }
+    
+    /**
+     * Loads every file in the client directory of a game jar.
+     * 
+     * @param jar the game jar.
+     * @param clientDir the client directory in the jar.
+     * @param mainHTML the path of the main HTML file relative to the client directory.
+     * @param config the configuration, which selects the processing steps.
+     * @param packFile the file to pack the assets into, or <code>null</code> to
+     * hold them in direct memory.
+     * @param cacheDir the directory in which minified and bundled files are saved,
+     * or <code>null</code> to process the files every time.
+     * @return the asset cache.
+     * @throws IOException if a file cannot be read, or the pack or cache file
+     * cannot be written.
+     */
+    public static AssetCache load(JarFile jar, String clientDir, String mainHTML, Config config, File packFile, File cacheDir) throws IOException {
+        boolean process = config.isMinifyAssets() || config.isBundleScripts();
+        File cacheFile = process && cacheDir != null ? new File(cacheDir, hashFile(new File(jar.getName())) + "-v" + CACHE_VERSION + "."
+                + AssetMinifier.VERSION + "-" + (config.isMinifyAssets() ? "m" : "") + (config.isBundleScripts() ? "b" : "") + ".cache") : null;
+        Map<String, byte[]> files = cacheFile == null ? null : readCache(cacheFile);
+        if(files == null) {
+            files = readClientFiles(jar, clientDir);
+            if(config.isBundleScripts())
+                bundle(files, mainHTML);
+            if(config.isMinifyAssets()) {
+                for(Map.Entry<String, byte[]> file : files.entrySet())
+                    file.setValue(AssetMinifier.minify(MimeTypes.get(file.getKey()), file.getValue()));
+            }
+            if(cacheFile != null)
+                writeCache(cacheFile, files);
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        if(config.isFingerprintAssets()) {
+            // stylesheets are fingerprinted after the files they reference, and HTML
+            // files are rewritten last but keep their paths since they are entry points
+            List<String> stylesheets = new ArrayList<>(), pages = new ArrayList<>();
+            for(Map.Entry<String, byte[]> file : files.entrySet()) {
+                String type = MimeTypes.get(file.getKey());
+                if(type.startsWith("text/html"))
+                    pages.add(file.getKey());
+                else if(type.startsWith("text/css"))
+                    stylesheets.add(file.getKey());
+                else
+                    fingerprints.put(file.getKey(), Asset.fingerprint(file.getKey(), Asset.hash(file.getValue())));
+            }
+            for(String path : stylesheets) {
+                byte[] data = rewrite(files.get(path), path, CSS_REFERENCE, fingerprints);
+                files.put(path, data);
+                fingerprints.put(path, Asset.fingerprint(path, Asset.hash(data)));
+            }
+            for(String path : pages)
+                files.put(path, rewrite(files.get(path), path, HTML_REFERENCE, fingerprints));
+        }
+        AssetPack pack = packFile == null ? null : AssetPack.write(packFile, files);
+        Map<String, Asset> assets = new HashMap<>();
+        for(Map.Entry<String, byte[]> file : files.entrySet()) {
+            Asset asset = pack == null ? new Asset(file.getKey(), file.getValue())
+                    : new Asset(file.getKey(), file.getValue(), pack.get(file.getKey()));
+            assets.put(asset.getPath(), asset);
+            if(fingerprints.containsKey(asset.getPath())) {
+                Asset fingerprinted = asset.fingerprinted();
+                assets.put(fingerprinted.getPath(), fingerprinted);
+            }
+        }
+        return new AssetCache(assets, fingerprints, pack, mainHTML);
+    }
+    
+    /**
+     * Reads every file in the client directory of a game jar.
+     * 
+     * @param jar the game jar.
+     * @param clientDir the client directory in the jar.
+     * @return the contents of each file, by path relative to the client directory.
+     * @throws IOException if a file cannot be read.
+     */
+    private static Map<String, byte[]> readClientFiles(JarFile jar, String clientDir) throws IOException {
+        String prefix = clientDir.endsWith("/") ? clientDir : clientDir + "/";
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while(entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if(entry.isDirectory() || !entry.getName().startsWith(prefix))
+                continue;
+            try(InputStream in = jar.getInputStream(entry)) {
+                files.put(entry.getName().substring(prefix.length()), FileSystem.readAll(in));
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Bundles each run of two or more script tags in the main HTML file into one
+     * script. The tags of a run are replaced by a single tag for the bundle, which
+     * is added next to the main HTML file. A run is left as it is if any of its
+     * scripts is not a client file, or starts with a directive prologue such as
+     * <code>"use strict"</code>, which would apply to every script after it in the
+     * bundle. Tags with attributes other than <code>src</code> never take part,
+     * since they may change how the script is loaded.
+     * <p>
+     * Bundled scripts are no longer isolated from each other's errors: an uncaught
+     * error thrown while one of them runs stops the rest of the bundle, whereas
+     * separate scripts would still run.
+     * 
+     * @param files the contents of each file, by path.
+     * @param mainHTML the path of the main HTML file.
+     */
+    private static void bundle(Map<String, byte[]> files, String mainHTML) {
+        byte[] html = files.get(mainHTML);
+        if(html == null)
+            return;
+        String text = new String(html, StandardCharsets.ISO_8859_1);
+        String dir = mainHTML.substring(0, mainHTML.lastIndexOf('/') + 1);
+        Matcher run = SCRIPT_RUN.matcher(text);
+        StringBuffer sb = new StringBuffer(text.length());
+        int bundles = 0;
+        while(run.find()) {
+            List<String> scripts = new ArrayList<>();
+            Matcher tag = SCRIPT_TAG.matcher(run.group());
+            while(tag.find() && scripts != null) {
+                String url = tag.group(2).trim();
+                int end = url.indexOf('?') < 0 ? url.indexOf('#') : url.indexOf('?');
+                String path = resolve(dir, end < 0 ? url : url.substring(0, end));
+                if(path == null || !files.containsKey(path) || hasDirective(files.get(path)))
+                    scripts = null;
+                else
+                    scripts.add(path);
+            }
+            if(scripts == null) {
+                run.appendReplacement(sb, Matcher.quoteReplacement(run.group()));
+                continue;
+            }
+            String name;
+            do {
+                name = ++ bundles == 1 ? "bundle.js" : "bundle-" + bundles + ".js";
+            }while(files.containsKey(dir + name));
+            StringBuilder script = new StringBuilder();
+            for(String path : scripts) {
+                // a script may end in a line comment or without a semicolon
+                script.append(new String(files.get(path), StandardCharsets.ISO_8859_1)).append("\n;\n");
+            }
+            files.put(dir + name, script.toString().getBytes(StandardCharsets.ISO_8859_1));
+            run.appendReplacement(sb, Matcher.quoteReplacement("<script src=\"" + name + "\"></script>\n"));
+        }
+        if(bundles == 0)
+            return;
+        run.appendTail(sb);
+        files.put(mainHTML, sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+    
+    /**
+     * Returns whether or not a script starts with a directive prologue, which is
+     * the case when its first statement, after any whitespace and comments, is a
+     * string literal.
+     * 
+     * @param script the contents of the script.
+     * @return <code>true</code>, if the script has a directive, <code>false</code>
+     * otherwise.
+     */
+    private static boolean hasDirective(byte[] script) {
+        String text = new String(script, StandardCharsets.ISO_8859_1);
+        int i = text.startsWith("\u00EF\u00BB\u00BF") ? 3 : 0;
+        while(i < text.length()) {
+            char c = text.charAt(i);
+            if(Character.isWhitespace(c) || c == '\u00A0')
+                ++ i;
+            else if(text.startsWith("//", i)) {
+                int end = text.indexOf('\n', i);
+                i = end < 0 ? text.length() : end + 1;
+            }else if(text.startsWith("/*", i)) {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? text.length() : end + 2;
+            }else
+                return c == '"' || c == '\'';
+        }
+        return false;
+    }
+    
+    /**
+     * Computes the content hash of a file.
+     * 
+     * @param file the file.
+     * @return the hex encoded content hash.
+     * @throws IOException if the file cannot be read.
+     */
+    private static String hashFile(File file) throws IOException {
+        try(DigestInputStream in = new DigestInputStream(new FileInputStream(file), Asset.digest())) {
+            byte[] buf = new byte[65536];
+            while(in.read(buf) >= 0)
+                continue;
+            return Asset.hex(in.getMessageDigest().digest());
+        }
+    }
+    
+    /**
+     * Reads processed client files saved by {@link #writeCache(File, Map)}.
+     * 
+     * @param file the cache file.
+     * @return the contents of each file, by path, or <code>null</code> if the
+     * cache file does not exist or cannot be read.
+     */
+    private static Map<String, byte[]> readCache(File file) {
+        if(!file.isFile())
+            return null;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != CACHE_MAGIC)
+                return null;
+            int count = in.readInt();
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            for(int i = 0;i < count;++ i) {
+                String path = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                files.put(path, data);
+            }
+            return files;
+        }catch(IOException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Saves processed client files, replacing any other cache files in the same
+     * directory, since they belong to older game jars.
+     * 
+     * @param file the cache file.
+     * @param files the contents of each file, by path.
+     * @throws IOException if the cache file cannot be written.
+     */
+    private static void writeCache(File file, Map<String, byte[]> files) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File[] stale = dir.listFiles((d, name) -> name.endsWith(".cache"));
+        if(stale != null) {
+            for(File f : stale)
+                f.delete();
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(files.size());
+            for(Map.Entry<String, byte[]> entry : files.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Rewrites the references to assets in a file to their fingerprinted paths.
+     * References to other hosts and to files that are not fingerprinted are left
+     * as they are.
+     * 
+     * @param data the file contents.
+     * @param path the path of the file.
+     * @param pattern the pattern that matches references, with the reference in
+     * its third group.
+     * @param fingerprints the fingerprinted paths by original path.
+     * @return the rewritten file contents.
+     */
+    private static byte[] rewrite(byte[] data, String path, Pattern pattern, Map<String, String> fingerprints) {
+        // ISO-8859-1 maps every byte to one character, so UTF-8 text survives unchanged
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        String dir = path.substring(0, path.lastIndexOf('/') + 1);
+        Matcher m = pattern.matcher(text);
+        StringBuffer sb = new StringBuffer(text.length() + 64);
+        boolean changed = false;
+        while(m.find()) {
+            String url = m.group(3).trim();
+            int end = url.length();
+            for(char c : new char[] {'?', '#'}) {
+                int index = url.indexOf(c);
+                if(index >= 0 && index < end)
+                    end = index;
+            }
+            String target = resolve(dir, url.substring(0, end));
+            String fingerprinted = target == null ? null : fingerprints.get(target);
+            if(fingerprinted == null) {
+                m.appendReplacement(sb, Matcher.quoteReplacement(m.group()));
+                continue;
+            }
+            String file = fingerprinted.substring(fingerprinted.lastIndexOf('/') + 1);
+            String replaced = url.substring(0, url.lastIndexOf('/', end - 1) + 1) + file + url.substring(end);
+            m.appendReplacement(sb, Matcher.quoteReplacement(m.group(1) + m.group(2) + replaced + m.group(2)));
+            changed = true;
+        }
+        if(!changed)
+            return data;
+        m.appendTail(sb);
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Resolves a reference in a file to a path relative to the client directory.
+     * 
+     * @param dir the directory of the file, ending with a slash or empty.
+     * @param url the reference, without any query or fragment.
+     * @return the resolved path, or <code>null</code> if the reference is not to
+     * a local file.
+     */
+    private static String resolve(String dir, String url) {
+        if(url.isEmpty() || url.startsWith("//") || url.indexOf(':') >= 0)
+            return null;
+        String path = url.startsWith("/") ? url.substring(1) : dir + url;
+        List<String> parts = new ArrayList<>();
+        for(String part : path.split("/", -1)) {
+            if(".".equals(part))
+                continue;
+            if("..".equals(part)) {
+                if(parts.isEmpty())
+                    return null;
+                parts.remove(parts.size() - 1);
+            }else
+                parts.add(part);
+        }
+        return String.join("/", parts);
+    }
+    
+    /**
+     * Returns the asset for a request path. The root path maps to the main HTML file.
+     * 
+     * @param requestPath the request path, starting with a slash.
+     * @return the asset, or <code>null</code> if there is no such asset.
+     */
+    public Asset get(String requestPath) {
+        if(requestPath.isEmpty() || "/".equals(requestPath))
+            return assets.get(mainHTML);
+        return assets.get(requestPath.substring(1));
+    }
+    
+    /**
+     * Returns the fingerprinted path of an asset.
+     * 
+     * @param path the path of the asset relative to the client directory.
+     * @return the fingerprinted path, or <code>null</code> if the asset is not
+     * fingerprinted.
+     */
+    public String getFingerprintedPath(String path) {
+        return fingerprints.get(path);
+    }
+    
+    /**
+     * Returns the pack holding the contents of the assets.
+     * 
+     * @return the asset pack, or <code>null</code> if the assets are held in
+     * direct memory.
+     */
+    public AssetPack getPack() {
+        return pack;
+    }
+    
+    /**
+     * Returns every asset in the cache.
+     * 
+     * @return an unmodifiable view of the assets.
+     */
+    public Collection<Asset> getAssets() {
+        return Collections.unmodifiableCollection(assets.values());
+    }
+    
+    /**
+     * Returns the number of bytes of memory used by the assets.
+     * 
+     * @return the size of the cache in memory.
+     */
+    public long getMemorySize() {
+        return memorySize;
+    }
+}
@@ -0,0 +1,234 @@
+package ws2d.core.server;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import ws2d.util.Logger;
+
+/**
+ * Answers HTTP requests for client files from the asset cache. Responses carry
+ * the entity tag of the representation sent, so browsers revalidate with
+ * <code>If-None-Match</code> and receive <code>304 Not Modified</code> if the asset
+ * has not changed, and the gzip variant, which has its own entity tag, is sent to
+ * browsers that accept it. A single byte range may be requested with
+ * <code>Range</code>, guarded by <code>If-Range</code>, so media can be streamed
+ * and downloads resumed; the range is a view of the asset's contents and is never
+ * copied.
+ * 
+ * @author Ian
+ */
+final class AssetHandler {
+    /**
+     * The asset cache.
+     */
+    private final AssetCache cache;
+    
+    /**
+     * The logger for the <code>AssetHandler</code>.
+     */
+    private static final Logger LOG = new Logger("SERVER");
+    /**
+     * The name of the <code>Vary</code> header.
+     */
+    private static final CharSequence VARY = HttpHeaders.createOptimized("Vary");
+    /**
+     * The value of the <code>Cache-Control</code> header, which makes browsers
+     * revalidate assets before using their cached copy.
+     */
+    private static final CharSequence NO_CACHE = HttpHeaders.createOptimized("no-cache");
+    /**
+     * The value of the <code>Cache-Control</code> header of fingerprinted assets,
+     * whose contents never change for a given path.
+     */
+    private static final CharSequence IMMUTABLE = HttpHeaders.createOptimized("public, max-age=31536000, immutable");
+    /**
+     * The value of the <code>Content-Encoding</code> header of gzip variants.
+     */
+    private static final CharSequence GZIP = HttpHeaders.createOptimized("gzip");
+    /**
+     * The value of the <code>Allow</code> header.
+     */
+    private static final CharSequence ALLOWED_METHODS = HttpHeaders.createOptimized("GET, HEAD");
+    /**
+     * The name of the <code>Range</code> header.
+     */
+    private static final CharSequence RANGE = HttpHeaders.createOptimized("Range");
+    /**
+     * The name of the <code>If-Range</code> header.
+     */
+    private static final CharSequence IF_RANGE = HttpHeaders.createOptimized("If-Range");
+    /**
+     * The value of the <code>Accept-Ranges</code> header.
+     */
+    private static final CharSequence BYTES = HttpHeaders.createOptimized("bytes");
+    /**
+     * The range returned by {@link #parseRange(String, int)} for ranges that do
+     * not overlap the asset.
+     */
+    static final int[] UNSATISFIABLE = new int[0];
+    
+    /**
+     * Constructs a new instance of <code>AssetHandler</code> for the specified cache.
+     * 
+     * @param cache the asset cache.
+     */
+    AssetHandler(AssetCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Answers a request for a client file.
+     * 
+     * @param req the request.
+     */
+    void handle(HttpServerRequest req) {
+        HttpServerResponse response = req.response();
+        HttpMethod method = req.method();
+        if(method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            response.setStatusCode(405).putHeader(HttpHeaders.ALLOW, ALLOWED_METHODS).end();
+            return;
+        }
+        Asset asset = cache.get(req.path());
+        if(asset == null) {
+            LOG.info("Client requested file " + req.path() + ", which does not exist.");
+            response.setStatusCode(404).end();
+            return;
+        }
+        boolean gzip = asset.getGzipContents() != null && acceptsGzip(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.putHeader(HttpHeaders.CACHE_CONTROL, asset.isImmutable() ? IMMUTABLE : NO_CACHE);
+        response.putHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        if(asset.getGzipContents() != null)
+            response.putHeader(VARY, HttpHeaders.ACCEPT_ENCODING);
+        String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if(matches(ifNoneMatch, asset.getETag()) || asset.getGzipETag() != null && matches(ifNoneMatch, asset.getGzipETag())) {
+            response.putHeader(HttpHeaders.ETAG, gzip ? asset.getGzipETag() : asset.getETag()).setStatusCode(304).end();
+            return;
+        }
+        Buffer body = asset.getContents();
+        String range = req.getHeader(RANGE);
+        // ranges are always of the identity encoding, so a cache holding the gzip
+        // variant never has its If-Range matched
+        int[] bounds = range == null || !ifRange(req.getHeader(IF_RANGE), asset.getETag()) ? null : parseRange(range, body.length());
+        if(bounds == UNSATISFIABLE) {
+            response.putHeader(HttpHeaders.ETAG, asset.getETag());
+            response.setStatusCode(416).putHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + body.length()).end();
+            return;
+        }
+        if(bounds != null) {
+            gzip = false;
+            response.setStatusCode(206).putHeader(HttpHeaders.CONTENT_RANGE, "bytes " + bounds[0] + "-" + bounds[1] + "/" + body.length());
+            body = body.slice(bounds[0], bounds[1] + 1);
+        }else if(gzip) {
+            body = asset.getGzipContents();
+            response.putHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.putHeader(HttpHeaders.ETAG, gzip ? asset.getGzipETag() : asset.getETag());
+        response.putHeader(HttpHeaders.CONTENT_TYPE, asset.getContentType());
+        if(method == HttpMethod.HEAD)
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length())).end();
+        else
+            response.end(body);
+    }
+    
+    /**
+     * Returns whether or not an <code>If-None-Match</code> header matches an entity
+     * tag, using the weak comparison required for this header.
+     * 
+     * @param header the header value, or <code>null</code> if there is none.
+     * @param etag the entity tag.
+     * @return <code>true</code>, if the header matches, <code>false</code> otherwise.
+     */
+    static boolean matches(String header, String etag) {
+        if(header == null)
+            return false;
+        for(String tag : header.split(",")) {
+            tag = tag.trim();
+            if(tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if("*".equals(tag) || etag.equals(tag))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Returns whether or not the <code>Range</code> header of a request should be
+     * honoured given its <code>If-Range</code> header. The range is only honoured
+     * if the header is absent or strongly matches the entity tag; assets have no
+     * modification date, so a date never matches.
+     * 
+     * @param header the header value, or <code>null</code> if there is none.
+     * @param etag the entity tag.
+     * @return <code>true</code>, if the range should be honoured, <code>false</code>
+     * if the whole asset should be sent.
+     */
+    static boolean ifRange(String header, String etag) {
+        return header == null || etag.equals(header.trim());
+    }
+    
+    /**
+     * Parses a <code>Range</code> header with a single byte range. Headers that
+     * are malformed, use another unit or request several ranges are ignored, and
+     * the whole asset is sent instead.
+     * 
+     * @param header the header value.
+     * @param length the length of the asset.
+     * @return the first and last byte of the range, {@link #UNSATISFIABLE} if the
+     * range lies outside of the asset, or <code>null</code> if the header is ignored.
+     */
+    static int[] parseRange(String header, int length) {
+        header = header.trim();
+        if(!header.regionMatches(true, 0, "bytes=", 0, 6) || header.indexOf(',') >= 0)
+            return null;
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if(dash < 0)
+            return null;
+        long first, last;
+        try {
+            String start = spec.substring(0, dash).trim(), end = spec.substring(dash + 1).trim();
+            if(start.isEmpty()) {
+                // a suffix range of the last bytes
+                long suffix = Long.parseLong(end);
+                if(suffix <= 0 || length == 0)
+                    return UNSATISFIABLE;
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            }else {
+                first = Long.parseLong(start);
+                last = end.isEmpty() ? length - 1 : Math.min(Long.parseLong(end), length - 1);
+                if(first < 0 || (!end.isEmpty() && Long.parseLong(end) < first))
+                    return null;
+                if(first >= length)
+                    return UNSATISFIABLE;
+            }
+        }catch(NumberFormatException ex) {
+            return null;
+        }
+        return new int[] {(int)first, (int)last};
+    }
+    
+    /**
+     * Returns whether or not an <code>Accept-Encoding</code> header allows gzip.
+     * 
+     * @param header the header value, or <code>null</code> if there is none.
+     * @return <code>true</code>, if gzip is accepted, <code>false</code> otherwise.
+     */
+    static boolean acceptsGzip(String header) {
+        if(header == null)
+            return false;
+        for(String coding : header.split(",")) {
+            int semicolon = coding.indexOf(';');
+            String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim();
+            if(!"gzip".equalsIgnoreCase(name) && !"*".equals(name))
+                continue;
+            if(semicolon < 0)
+                return true;
+            String params = coding.substring(semicolon + 1).replace(" ", "");
+            return !params.startsWith("q=0") || params.matches("q=0\\.0*[1-9].*");
+        }
+        return false;
+    }
+}
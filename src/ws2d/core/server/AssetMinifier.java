@@ -0,0 +1,451 @@
+package ws2d.core.server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Removes comments and redundant whitespace from client scripts, stylesheets and
+ * HTML files. The minification is conservative: names are never changed, and a
+ * line break is kept wherever it may end a script statement, so minified files
+ * behave exactly like the originals. Comments starting with <code>/*!</code> are
+ * kept, since they usually hold licenses.
+ * <p>
+ * Files are processed as ISO-8859-1 text, which maps every byte to one character,
+ * so UTF-8 files pass through unchanged apart from the removed characters.
+ * 
+ * @author Ian
+ */
+final class AssetMinifier {
+    /**
+     * The version of the minification rules, which is part of the name of the
+     * processed asset cache file. It must be increased whenever a change to this
+     * class changes its output, so that files minified by an older version are
+     * not served from the cache.
+     */
+    static final int VERSION = 1;
+    /**
+     * The characters after which a script may start a regular expression literal
+     * rather than a division.
+     */
+    private static final String REGEX_PREFIXES = "(,=:[!&|?{};+-*%<>~^";
+    /**
+     * The keywords after which a script may start a regular expression literal.
+     */
+    private static final String[] REGEX_KEYWORDS = {"return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw",
+        "case", "do", "else", "yield", "await"};
+    /**
+     * The characters after which a line break in a script can never end a statement.
+     */
+    private static final String JS_OPEN = ";{,([";
+    /**
+     * The characters before which a line break in a script can never end a statement.
+     */
+    private static final String JS_CLOSE = "};,)]";
+    /**
+     * The characters next to which whitespace in a stylesheet is never significant.
+     */
+    private static final String CSS_PUNCTUATION = "{};,>~";
+    
+    /**
+     * Constructs a new instance of <code>AssetMinifier</code>.
+     */
+    private AssetMinifier() { }
+    
+    /**
+     * Minifies a file according to its MIME type. Files that are not scripts,
+     * stylesheets or HTML files are returned unchanged.
+     * 
+     * @param type the MIME type of the file.
+     * @param data the contents of the file.
+     * @return the minified contents.
+     */
+    static byte[] minify(String type, byte[] data) {
+        String text = new String(data, StandardCharsets.ISO_8859_1), minified;
+        if(type.startsWith("application/javascript"))
+            minified = minifyScript(text);
+        else if(type.startsWith("text/css"))
+            minified = minifyStyle(text);
+        else if(type.startsWith("text/html"))
+            minified = minifyHTML(text);
+        else
+            return data;
+        return minified.length() < text.length() ? minified.getBytes(StandardCharsets.ISO_8859_1) : data;
+    }
+    
+    /**
+     * Minifies a script.
+     * 
+     * @param s the script.
+     * @return the minified script.
+     */
+    static String minifyScript(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        // 0 for no whitespace, 1 for a space and 2 for a line break
+        int pending = 0;
+        int i = 0, n = s.length();
+        while(i < n) {
+            char c = s.charAt(i);
+            if(isSpace(c)) {
+                pending = Math.max(pending, c == '\n' || c == '\r' ? 2 : 1);
+                ++ i;
+                continue;
+            }
+            if(c == '/' && i + 1 < n && s.charAt(i + 1) == '/') {
+                while(i < n && s.charAt(i) != '\n' && s.charAt(i) != '\r')
+                    ++ i;
+                continue;
+            }
+            if(c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                if(i + 2 < n && s.charAt(i + 2) == '!') {
+                    flushScriptSpace(out, pending, c);
+                    out.append(s, i, end);
+                    pending = 2;
+                }else {
+                    boolean lineBreak = false;
+                    for(int j = i;j < end && !lineBreak;++ j)
+                        lineBreak = s.charAt(j) == '\n' || s.charAt(j) == '\r';
+                    pending = Math.max(pending, lineBreak ? 2 : 1);
+                }
+                i = end;
+                continue;
+            }
+            int end;
+            if(c == '"' || c == '\'')
+                end = skipString(s, i, c);
+            else if(c == '`')
+                end = skipTemplate(s, i);
+            else if(c == '/' && regexAllowed(out))
+                end = skipRegex(s, i);
+            else
+                end = i + 1;
+            flushScriptSpace(out, pending, c);
+            pending = 0;
+            out.append(s, i, end);
+            i = end;
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Writes any whitespace that separates the output from the next character of a
+     * script and cannot be removed.
+     * 
+     * @param out the output.
+     * @param pending the whitespace before the next character, <code>0</code> for
+     * none, <code>1</code> for a space and <code>2</code> for a line break.
+     * @param next the next character.
+     */
+    private static void flushScriptSpace(StringBuilder out, int pending, char next) {
+        if(pending == 0 || out.length() == 0)
+            return;
+        char prev = out.charAt(out.length() - 1);
+        if(pending == 2) {
+            if(JS_OPEN.indexOf(prev) < 0 && JS_CLOSE.indexOf(next) < 0)
+                out.append('\n');
+            return;
+        }
+        if((isWordChar(prev) && isWordChar(next)) || (prev == next && "+-/".indexOf(prev) >= 0) || (prev == '/' && next == '*')
+                || (prev == '<' && next == '!') || (prev == '-' && next == '>') || (Character.isDigit(prev) && next == '.'))
+            out.append(' ');
+    }
+    
+    /**
+     * Returns whether or not a slash following the output starts a regular
+     * expression literal.
+     * 
+     * @param out the output.
+     * @return <code>true</code>, if the slash starts a regular expression,
+     * <code>false</code> if it is a division.
+     */
+    private static boolean regexAllowed(StringBuilder out) {
+        int end = out.length();
+        if(end == 0)
+            return true;
+        char prev = out.charAt(end - 1);
+        if(REGEX_PREFIXES.indexOf(prev) >= 0 || prev == '\n')
+            return true;
+        if(!isWordChar(prev))
+            return false;
+        int start = end;
+        while(start > 0 && isWordChar(out.charAt(start - 1)))
+            -- start;
+        String word = out.substring(start, end);
+        for(String keyword : REGEX_KEYWORDS) {
+            if(keyword.equals(word))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Finds the end of a string literal.
+     * 
+     * @param s the text.
+     * @param i the index of the opening quote.
+     * @param quote the quote character.
+     * @return the index after the closing quote.
+     */
+    private static int skipString(String s, int i, char quote) {
+        int n = s.length();
+        for(++ i;i < n;++ i) {
+            char c = s.charAt(i);
+            if(c == '\\')
+                ++ i;
+            else if(c == quote || c == '\n')
+                return i + 1;
+        }
+        return n;
+    }
+    
+    /**
+     * Finds the end of a template literal, including any nested expressions.
+     * 
+     * @param s the text.
+     * @param i the index of the opening backtick.
+     * @return the index after the closing backtick.
+     */
+    private static int skipTemplate(String s, int i) {
+        int n = s.length();
+        for(++ i;i < n;++ i) {
+            char c = s.charAt(i);
+            if(c == '\\')
+                ++ i;
+            else if(c == '`')
+                return i + 1;
+            else if(c == '$' && i + 1 < n && s.charAt(i + 1) == '{') {
+                int depth = 0;
+                for(++ i;i < n;++ i) {
+                    c = s.charAt(i);
+                    if(c == '{')
+                        ++ depth;
+                    else if(c == '}' && -- depth == 0)
+                        break;
+                    else if(c == '"' || c == '\'')
+                        i = skipString(s, i, c) - 1;
+                    else if(c == '`')
+                        i = skipTemplate(s, i) - 1;
+                }
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Finds the end of a regular expression literal, excluding its flags.
+     * 
+     * @param s the text.
+     * @param i the index of the opening slash.
+     * @return the index after the closing slash.
+     */
+    private static int skipRegex(String s, int i) {
+        int n = s.length();
+        boolean inClass = false;
+        for(++ i;i < n;++ i) {
+            char c = s.charAt(i);
+            if(c == '\\')
+                ++ i;
+            else if(c == '[')
+                inClass = true;
+            else if(c == ']')
+                inClass = false;
+            else if((c == '/' && !inClass) || c == '\n')
+                return i + 1;
+        }
+        return n;
+    }
+    
+    /**
+     * Minifies a stylesheet.
+     * 
+     * @param s the stylesheet.
+     * @return the minified stylesheet.
+     */
+    static String minifyStyle(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        boolean pending = false;
+        int i = 0, n = s.length();
+        while(i < n) {
+            char c = s.charAt(i);
+            if(isSpace(c)) {
+                pending = true;
+                ++ i;
+                continue;
+            }
+            if(c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                if(i + 2 < n && s.charAt(i + 2) == '!')
+                    out.append(s, i, end);
+                else
+                    pending = true;
+                i = end;
+                continue;
+            }
+            int end;
+            if(c == '"' || c == '\'')
+                end = skipString(s, i, c);
+            else if((c == 'u' || c == 'U') && s.regionMatches(true, i, "url(", 0, 4)) {
+                end = s.indexOf(')', i);
+                end = end < 0 ? n : end + 1;
+            }else
+                end = i + 1;
+            if(c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';')
+                out.setLength(out.length() - 1);
+            if(pending && out.length() > 0) {
+                char prev = out.charAt(out.length() - 1);
+                if(CSS_PUNCTUATION.indexOf(prev) < 0 && prev != ':' && prev != '(' && CSS_PUNCTUATION.indexOf(c) < 0 && c != ')' && c != '!')
+                    out.append(' ');
+            }
+            pending = false;
+            out.append(s, i, end);
+            i = end;
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Minifies an HTML file. Comments are removed, except for conditional comments,
+     * and runs of whitespace in text are collapsed into one space. Preformatted
+     * elements are left as they are, and inline scripts and stylesheets are
+     * minified.
+     * 
+     * @param s the HTML file.
+     * @return the minified HTML file.
+     */
+    static String minifyHTML(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        boolean pending = false;
+        int i = 0, n = s.length();
+        while(i < n) {
+            char c = s.charAt(i);
+            if(isSpace(c)) {
+                pending = true;
+                ++ i;
+                continue;
+            }
+            if(pending && out.length() > 0 && out.charAt(out.length() - 1) != ' ')
+                out.append(' ');
+            pending = false;
+            if(c != '<') {
+                out.append(c);
+                ++ i;
+                continue;
+            }
+            if(s.startsWith("<!--", i)) {
+                int end = s.indexOf("-->", i + 4);
+                end = end < 0 ? n : end + 3;
+                if(s.startsWith("<!--[", i))
+                    out.append(s, i, end);
+                i = end;
+                continue;
+            }
+            int end = skipTag(s, i);
+            String name = tagName(s, i), tag = s.substring(i, end);
+            out.append(tag);
+            i = end;
+            if(!"script".equals(name) && !"style".equals(name) && !"pre".equals(name) && !"textarea".equals(name))
+                continue;
+            int close = indexOfIgnoreCase(s, "</" + name, i);
+            if(close < 0)
+                close = n;
+            String body = s.substring(i, close);
+            if("script".equals(name) && isScript(tag))
+                body = minifyScript(body);
+            else if("style".equals(name))
+                body = minifyStyle(body);
+            out.append(body);
+            i = close;
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Returns whether or not a script tag holds a script, rather than data or a
+     * template.
+     * 
+     * @param tag the opening script tag.
+     * @return <code>true</code>, if the tag holds a script, <code>false</code> otherwise.
+     */
+    private static boolean isScript(String tag) {
+        int type = indexOfIgnoreCase(tag, "type", 0);
+        if(type < 0)
+            return true;
+        String rest = tag.substring(type + 4).replaceAll("^\\s*=\\s*[\"']?", "").toLowerCase();
+        return rest.startsWith("text/javascript") || rest.startsWith("application/javascript") || rest.startsWith("module");
+    }
+    
+    /**
+     * Finds the end of an HTML tag, skipping quoted attribute values.
+     * 
+     * @param s the text.
+     * @param i the index of the opening angle bracket.
+     * @return the index after the closing angle bracket.
+     */
+    private static int skipTag(String s, int i) {
+        int n = s.length();
+        for(++ i;i < n;++ i) {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\'') {
+                int end = s.indexOf(c, i + 1);
+                i = end < 0 ? n - 1 : end;
+            }else if(c == '>')
+                return i + 1;
+        }
+        return n;
+    }
+    
+    /**
+     * Returns the lower case name of an HTML tag.
+     * 
+     * @param s the text.
+     * @param i the index of the opening angle bracket.
+     * @return the tag name, which is empty for closing tags and declarations.
+     */
+    private static String tagName(String s, int i) {
+        int start = i + 1, end = start;
+        while(end < s.length() && Character.isLetterOrDigit(s.charAt(end)))
+            ++ end;
+        return s.substring(start, end).toLowerCase();
+    }
+    
+    /**
+     * Finds a string in a text, ignoring case.
+     * 
+     * @param s the text.
+     * @param find the string to find.
+     * @param from the index to start searching from.
+     * @return the index of the string, or <code>-1</code> if it is not found.
+     */
+    private static int indexOfIgnoreCase(String s, String find, int from) {
+        for(int i = from;i + find.length() <= s.length();++ i) {
+            if(s.regionMatches(true, i, find, 0, find.length()))
+                return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns whether or not a character is ASCII whitespace. Other characters are
+     * never treated as whitespace, since they may be part of a UTF-8 sequence.
+     * 
+     * @param c the character.
+     * @return <code>true</code>, if the character is whitespace, <code>false</code>
+     * otherwise.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+    
+    /**
+     * Returns whether or not a character may be part of a script identifier,
+     * keyword or number.
+     * 
+     * @param c the character.
+     * @return <code>true</code>, if the character is part of a word, <code>false</code>
+     * otherwise.
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$' || c == '\\' || c >= 0x80;
+    }
+}
@@ -0,0 +1,123 @@
+package ws2d.core.server;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single file holding the contents of every client file, mapped into memory
+ * once it has been written. Each asset is a region of the mapping found through
+ * an offset index, so its contents live in the operating system's page cache
+ * rather than on the Java heap, and are written to sockets without being copied
+ * into an intermediate buffer.
+ * 
+ * @author Ian
+ */
+public final class AssetPack {
+    /**
+     * The pack file.
+     */
+    private final File file;
+    /**
+     * The mapped contents of the pack file.
+     */
+    private final MappedByteBuffer mapping;
+    /**
+     * The offset and length of each file in the pack, by path. The offset is held
+     * in the upper and the length in the lower half of each value.
+     */
+    private final Map<String, Long> index;
+    
+    /**
+     * Constructs a new instance of <code>AssetPack</code> with the specified mapping
+     * and index.
+     * 
+     * @param file the pack file.
+     * @param mapping the mapped contents of the pack file.
+     * @param index the offset and length of each file, by path.
+     */
+    private AssetPack(File file, MappedByteBuffer mapping, Map<String, Long> index) {
+        this.file = file;
+        this.mapping = mapping;
+        this.index = index;
+    }
+    
+    /**
+     * Writes files into a pack file, replacing any existing file, and maps it into
+     * memory. The file must belong to this process alone: truncating a file that
+     * another process has mapped makes that process fail when it next reads from
+     * the mapping.
+     * 
+     * @param file the pack file.
+     * @param files the contents of each file, by path.
+     * @return the asset pack.
+     * @throws IOException if the pack file cannot be written or mapped.
+     */
+    public static AssetPack write(File file, Map<String, byte[]> files) throws IOException {
+        Map<String, Long> index = new HashMap<>();
+        long offset = 0;
+        for(Map.Entry<String, byte[]> entry : files.entrySet()) {
+            index.put(entry.getKey(), offset << 32 | entry.getValue().length);
+            offset += entry.getValue().length;
+        }
+        if(offset > Integer.MAX_VALUE)
+            throw new IOException("Client files are too large to pack: " + offset + " bytes.");
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent != null)
+            parent.mkdirs();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for(byte[] data : files.values()) {
+                ByteBuffer buf = ByteBuffer.wrap(data);
+                while(buf.hasRemaining())
+                    channel.write(buf);
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, offset);
+            mapping.load();
+            return new AssetPack(file, mapping, index);
+        }
+    }
+    
+    /**
+     * Returns the contents of a file in the pack. The buffer is a view of the
+     * mapping, which cannot be released or modified, so it can be written to any
+     * number of responses.
+     * 
+     * @param path the path of the file.
+     * @return the contents, or <code>null</code> if the file is not in the pack.
+     */
+    public Buffer get(String path) {
+        Long entry = index.get(path);
+        if(entry == null)
+            return null;
+        int offset = (int)(entry >>> 32), length = (int)(long)entry;
+        ByteBuffer region = mapping.duplicate();
+        region.position(offset).limit(offset + length);
+        return Buffer.buffer(Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(region.slice()).asReadOnly()));
+    }
+    
+    /**
+     * Returns the pack file.
+     * 
+     * @return the pack file.
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the size of the pack file.
+     * 
+     * @return the size in bytes.
+     */
+    public int size() {
+        return mapping.capacity();
+    }
+}
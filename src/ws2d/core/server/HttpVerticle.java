@@ -0,0 +1,97 @@
+package ws2d.core.server;
+
+import ws2d.core.generic.Client;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+
+/**
+ * One instance of the HTTP and WebSocket front end. The server deploys several of
+ * these, each of which is bound to its own event loop and listens on the same port,
+ * so Vert.x spreads incoming connections between the event loops.
+ * 
+ * @author Ian
+ */
+final class HttpVerticle extends AbstractVerticle {
+    /**
+     * The server that handles requests and sockets.
+     */
+    private final Server server;
+    /**
+     * The options of the HTTP server, including the port to listen on.
+     */
+    private final HttpServerOptions options;
+    /**
+     * The HTTP server of this instance.
+     */
+    private HttpServer httpServer;
+    /**
+     * The name of this instance's event loop thread.
+     */
+    private volatile String thread;
+    /**
+     * The number of sockets connected through this instance. This is only modified
+     * on this instance's event loop.
+     */
+    private volatile int connections;
+    
+    /**
+     * Constructs a new instance of <code>HttpVerticle</code> for the specified server
+     * and HTTP server options.
+     * 
+     * @param server the server that handles requests and sockets.
+     * @param options the options of the HTTP server, including the port to listen on.
+     */
+    HttpVerticle(Server server, HttpServerOptions options) {
+        this.server = server;
+        this.options = options;
+        this.httpServer = null;
+        this.thread = null;
+        this.connections = 0;
+    }
+    
+    /**
+     * Starts listening on the configured port.
+     * 
+     * @param future the future completed once the server is listening.
+     */
+    @Override
+    public void start(Future<Void> future) {
+        thread = Thread.currentThread().getName();
+        httpServer = vertx.createHttpServer(options);
+        httpServer.requestHandler(server::onRequest).websocketHandler(socket -> {
+            Client client = server.onClientConnect(socket);
+            if(client == null)
+                return;
+            ++ connections;
+            socket.closeHandler(unused -> {
+                -- connections;
+                server.onClientDisconnect(client);
+            });
+        }).listen(result -> {
+            if(result.succeeded())
+                future.complete();
+            else
+                future.fail(result.cause());
+        });
+    }
+    
+    /**
+     * Returns the name of this instance's event loop thread.
+     * 
+     * @return the thread name, or <code>null</code> if this instance has not started.
+     */
+    String getThreadName() {
+        return thread;
+    }
+    
+    /**
+     * Returns the number of sockets connected through this instance.
+     * 
+     * @return the number of connections.
+     */
+    int getConnections() {
+        return connections;
+    }
+}
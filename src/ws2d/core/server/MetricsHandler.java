@@ -0,0 +1,332 @@
+package ws2d.core.server;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import ws2d.core.network.NetworkHandler;
+import ws2d.core.network.Packet;
+import ws2d.core.network.PacketData;
+import ws2d.core.network.PacketDispatcher;
+import ws2d.init.Ws2D;
+import ws2d.util.LatencyHistogram;
+
+/**
+ * Answers scrapes of the server's metrics in the Prometheus text format. Most
+ * metrics are read when they are scraped, from thread-safe counters that the
+ * network handler and game loop keep anyway. The gauges of the clients' queues
+ * and the scheduler are read from state owned by the game loop, so the game loop
+ * publishes them once a second instead, and scrapes, which are answered on an
+ * event loop, only read the published values. The metrics cover connected
+ * clients, the traffic of each packet type, the duration of ticks and their
+ * phases, queued tasks, packets and bytes, and the JVM's heap and garbage
+ * collectors.
+ * 
+ * @author Ian
+ */
+final class MetricsHandler {
+    /**
+     * The server whose metrics are served.
+     */
+    private final Server server;
+    /**
+     * The number of connected clients, as last published by the game loop.
+     */
+    private volatile long clients;
+    /**
+     * The number of packets waiting in the inbound queues of every client, as last
+     * published by the game loop.
+     */
+    private volatile long inboundQueued;
+    /**
+     * The number of bytes waiting to be sent to every client, as last published by
+     * the game loop.
+     */
+    private volatile long outboundQueued;
+    /**
+     * The most bytes waiting to be sent to a single client, as last published by
+     * the game loop.
+     */
+    private volatile long outboundQueuedMax;
+    /**
+     * The number of slow clients, as last published by the game loop.
+     */
+    private volatile long slowClients;
+    /**
+     * The number of tasks in the server scheduler, as last published by the game
+     * loop.
+     */
+    private volatile long schedulerTasks;
+    
+    /**
+     * The value of the <code>Content-Type</code> header of the Prometheus text format.
+     */
+    private static final CharSequence CONTENT_TYPE = HttpHeaders.createOptimized("text/plain; version=0.0.4; charset=utf-8");
+    /**
+     * The value of the <code>Allow</code> header.
+     */
+    private static final CharSequence ALLOWED_METHODS = HttpHeaders.createOptimized("GET, HEAD");
+    /**
+     * The quantiles reported for each duration summary.
+     */
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 1 };
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    
+    /**
+     * Constructs a new instance of <code>MetricsHandler</code> for the specified server.
+     * 
+     * @param server the server whose metrics are served.
+     */
+    MetricsHandler(Server server) {
+        this.server = server;
+    }
+    
+    /**
+     * Answers a scrape of the metrics.
+     * 
+     * @param req the request.
+     */
+    void handle(HttpServerRequest req) {
+        HttpServerResponse response = req.response();
+        HttpMethod method = req.method();
+        if(method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            response.setStatusCode(405).putHeader(HttpHeaders.ALLOW, ALLOWED_METHODS).end();
+            return;
+        }
+        StringBuilder out = new StringBuilder(8192);
+        writeClients(out);
+        writePackets(out);
+        writeTicks(out);
+        writeJvm(out);
+        Buffer body = Buffer.buffer(out.toString());
+        response.putHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+        if(method == HttpMethod.HEAD)
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length())).end();
+        else
+            response.end(body);
+    }
+    
+    /**
+     * Publishes the gauges that are read from state owned by the game loop. This is
+     * only called on the game loop.
+     */
+    void publish() {
+        // clients, queued inbound packets, queued outbound bytes, most queued bytes, slow clients
+        final long[] totals = new long[5];
+        final NetworkHandler net = server.getNetworkHandler();
+        server.forEachClient(client -> {
+            long queued = net.getQueuedBytes(client);
+            ++ totals[0];
+            totals[1] += client.getInboundQueue().size();
+            totals[2] += queued;
+            totals[3] = Math.max(totals[3], queued);
+            if(client.getWriteMonitor().isSlow())
+                ++ totals[4];
+        });
+        clients = totals[0];
+        inboundQueued = totals[1];
+        outboundQueued = totals[2];
+        outboundQueuedMax = totals[3];
+        slowClients = totals[4];
+        schedulerTasks = server.getScheduler().getTaskCount();
+    }
+    
+    /**
+     * Writes the metrics of the connected clients and their queues, as last
+     * published by the game loop.
+     * 
+     * @param out the output.
+     */
+    private void writeClients(StringBuilder out) {
+        header(out, "ws2d_clients", "gauge", "Connected WebSocket clients.");
+        sample(out, "ws2d_clients", null, clients);
+        header(out, "ws2d_http_connections", "gauge", "Open HTTP and WebSocket connections on each event loop.");
+        for(Map.Entry<String, Integer> entry : server.getConnectionCounts().entrySet())
+            sample(out, "ws2d_http_connections", label("event_loop", entry.getKey()), entry.getValue());
+        header(out, "ws2d_inbound_queued_packets", "gauge", "Packets waiting in the inbound queues of every client.");
+        sample(out, "ws2d_inbound_queued_packets", null, inboundQueued);
+        header(out, "ws2d_outbound_queued_bytes", "gauge", "Bytes waiting in the outbound and write queues of every client.");
+        sample(out, "ws2d_outbound_queued_bytes", null, outboundQueued);
+        header(out, "ws2d_outbound_queued_bytes_max", "gauge", "Most bytes waiting in the outbound and write queues of a single client.");
+        sample(out, "ws2d_outbound_queued_bytes_max", null, outboundQueuedMax);
+        header(out, "ws2d_slow_clients", "gauge", "Clients whose write queue is above the high watermark.");
+        sample(out, "ws2d_slow_clients", null, slowClients);
+    }
+    
+    /**
+     * Writes the traffic counts of each registered packet type.
+     * 
+     * @param out the output.
+     */
+    private static void writePackets(StringBuilder out) {
+        PacketDispatcher dispatcher = Ws2D.getRegistry().getDispatcher();
+        String[] labels = new String[dispatcher.size()];
+        for(int i = 0;i < labels.length;++ i) {
+            PacketData<Packet> pd = dispatcher.getPacketData(i);
+            if(pd != null)
+                labels[i] = label("id", String.valueOf(i)) + "," + label("packet", pd.packetClass.getSimpleName());
+        }
+        header(out, "ws2d_packets_received_total", "counter", "Packets received from clients.");
+        for(int i = 0;i < labels.length;++ i) {
+            if(labels[i] != null)
+                sample(out, "ws2d_packets_received_total", labels[i], dispatcher.getStats(i).getReceived());
+        }
+        header(out, "ws2d_packet_bytes_received_total", "counter", "Bytes of packets received from clients, including packet IDs.");
+        for(int i = 0;i < labels.length;++ i) {
+            if(labels[i] != null)
+                sample(out, "ws2d_packet_bytes_received_total", labels[i], dispatcher.getStats(i).getReceivedBytes());
+        }
+        header(out, "ws2d_packets_sent_total", "counter", "Packets sent to clients, counted once for each client.");
+        for(int i = 0;i < labels.length;++ i) {
+            if(labels[i] != null)
+                sample(out, "ws2d_packets_sent_total", labels[i], dispatcher.getStats(i).getSent());
+        }
+        header(out, "ws2d_packet_bytes_sent_total", "counter", "Bytes of packets sent to clients before bundling and compression, including packet IDs.");
+        for(int i = 0;i < labels.length;++ i) {
+            if(labels[i] != null)
+                sample(out, "ws2d_packet_bytes_sent_total", labels[i], dispatcher.getStats(i).getSentBytes());
+        }
+    }
+    
+    /**
+     * Writes the metrics of the game loop, taken from the tick profiler.
+     * 
+     * @param out the output.
+     */
+    private void writeTicks(StringBuilder out) {
+        TickProfiler profiler = server.getProfiler();
+        header(out, "ws2d_tps", "gauge", "Ticks per second measured over the last second.");
+        sample(out, "ws2d_tps", null, profiler.getTps());
+        header(out, "ws2d_tps_target", "gauge", "Target ticks per second.");
+        sample(out, "ws2d_tps_target", null, profiler.getTargetTps());
+        header(out, "ws2d_tick_duration_seconds", "summary", "Duration of whole ticks.");
+        summary(out, "ws2d_tick_duration_seconds", null, profiler.getTickHistogram());
+        header(out, "ws2d_tick_phase_duration_seconds", "summary", "Duration of each phase of a tick.");
+        for(TickProfiler.Phase phase : TickProfiler.Phase.values())
+            summary(out, "ws2d_tick_phase_duration_seconds", label("phase", phase.getDisplayName().toLowerCase()), profiler.getHistogram(phase));
+        header(out, "ws2d_tick_overruns_total", "counter", "Ticks that took longer than their period.");
+        sample(out, "ws2d_tick_overruns_total", null, profiler.getOverruns());
+        header(out, "ws2d_ticks_dropped_total", "counter", "Ticks dropped by the overrun policy.");
+        sample(out, "ws2d_ticks_dropped_total", null, profiler.getDroppedTicks());
+        header(out, "ws2d_scheduler_tasks", "gauge", "Tasks in the server scheduler.");
+        sample(out, "ws2d_scheduler_tasks", null, schedulerTasks);
+    }
+    
+    /**
+     * Writes the metrics of the JVM's memory, garbage collectors and threads, named
+     * as the Prometheus Java client names them.
+     * 
+     * @param out the output.
+     */
+    private static void writeJvm(StringBuilder out) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        String heapLabel = label("area", "heap"), nonHeapLabel = label("area", "nonheap");
+        header(out, "jvm_memory_bytes_used", "gauge", "Used bytes of a given JVM memory area.");
+        sample(out, "jvm_memory_bytes_used", heapLabel, heap.getUsed());
+        sample(out, "jvm_memory_bytes_used", nonHeapLabel, nonHeap.getUsed());
+        header(out, "jvm_memory_bytes_committed", "gauge", "Committed bytes of a given JVM memory area.");
+        sample(out, "jvm_memory_bytes_committed", heapLabel, heap.getCommitted());
+        sample(out, "jvm_memory_bytes_committed", nonHeapLabel, nonHeap.getCommitted());
+        header(out, "jvm_memory_bytes_max", "gauge", "Max bytes of a given JVM memory area.");
+        sample(out, "jvm_memory_bytes_max", heapLabel, heap.getMax());
+        sample(out, "jvm_memory_bytes_max", nonHeapLabel, nonHeap.getMax());
+        header(out, "jvm_gc_collection_seconds", "summary", "Time spent in a given JVM garbage collector in seconds.");
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String gcLabel = label("gc", gc.getName());
+            sample(out, "jvm_gc_collection_seconds_count", gcLabel, gc.getCollectionCount());
+            sample(out, "jvm_gc_collection_seconds_sum", gcLabel, gc.getCollectionTime() / 1e3);
+        }
+        header(out, "jvm_threads_current", "gauge", "Current thread count of a JVM.");
+        sample(out, "jvm_threads_current", null, ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+    
+    /**
+     * Writes the quantiles, sum and count of a histogram of durations as a summary
+     * in seconds.
+     * 
+     * @param out the output.
+     * @param name the name of the metric.
+     * @param labels the labels of the summary, or <code>null</code> if it has none.
+     * @param histogram the histogram of durations in nanoseconds.
+     */
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        for(double quantile : QUANTILES)
+            sample(out, name, prefix + label("quantile", String.valueOf(quantile)), histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+        sample(out, name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+        sample(out, name + "_count", labels, histogram.getCount());
+    }
+    
+    /**
+     * Writes the help and type lines of a metric.
+     * 
+     * @param out the output.
+     * @param name the name of the metric.
+     * @param type the type of the metric.
+     * @param help the description of the metric.
+     */
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    /**
+     * Writes a sample with an integer value.
+     * 
+     * @param out the output.
+     * @param name the name of the sample.
+     * @param labels the labels of the sample, or <code>null</code> if it has none.
+     * @param value the value.
+     */
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if(labels != null)
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+    
+    /**
+     * Writes a sample with a decimal value.
+     * 
+     * @param out the output.
+     * @param name the name of the sample.
+     * @param labels the labels of the sample, or <code>null</code> if it has none.
+     * @param value the value.
+     */
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if(labels != null)
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+    
+    /**
+     * Formats a label, escaping its value.
+     * 
+     * @param name the name of the label.
+     * @param value the value of the label.
+     * @return the formatted label.
+     */
+    private static String label(String name, String value) {
+        StringBuilder sb = new StringBuilder(name.length() + value.length() + 3).append(name).append("=\"");
+        for(int i = 0;i < value.length();++ i) {
+            char c = value.charAt(i);
+            if(c == '\\' || c == '"')
+                sb.append('\\').append(c);
+            else if(c == '\n')
+                sb.append("\\n");
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,83 @@
+package ws2d.core.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the file extensions of client files to their MIME types.
+ * 
+ * @author Ian
+ */
+final class MimeTypes {
+    /**
+     * The MIME types by lower case file extension.
+     */
+    private static final Map<String, String> TYPES = new HashMap<>();
+    /**
+     * The MIME type of files with an unknown extension.
+     */
+    private static final String DEFAULT_TYPE = "application/octet-stream";
+    
+    static {
+        TYPES.put("html", "text/html; charset=utf-8");
+        TYPES.put("htm", "text/html; charset=utf-8");
+        TYPES.put("js", "application/javascript; charset=utf-8");
+        TYPES.put("mjs", "application/javascript; charset=utf-8");
+        TYPES.put("css", "text/css; charset=utf-8");
+        TYPES.put("json", "application/json; charset=utf-8");
+        TYPES.put("map", "application/json; charset=utf-8");
+        TYPES.put("txt", "text/plain; charset=utf-8");
+        TYPES.put("xml", "application/xml; charset=utf-8");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("png", "image/png");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("wav", "audio/wav");
+        TYPES.put("mp3", "audio/mpeg");
+        TYPES.put("ogg", "audio/ogg");
+        TYPES.put("m4a", "audio/mp4");
+        TYPES.put("mp4", "video/mp4");
+        TYPES.put("webm", "video/webm");
+        TYPES.put("woff", "font/woff");
+        TYPES.put("woff2", "font/woff2");
+        TYPES.put("ttf", "font/ttf");
+        TYPES.put("otf", "font/otf");
+        TYPES.put("wasm", "application/wasm");
+    }
+    
+    /**
+     * Private to prevent instantiation.
+     */
+    private MimeTypes() { }
+    
+    /**
+     * Returns the MIME type of the file with the specified path.
+     * 
+     * @param path the file path.
+     * @return the MIME type.
+     */
+    static String get(String path) {
+        int dot = path.lastIndexOf('.');
+        if(dot < 0 || dot < path.lastIndexOf('/'))
+            return DEFAULT_TYPE;
+        String type = TYPES.get(path.substring(dot + 1).toLowerCase());
+        return type == null ? DEFAULT_TYPE : type;
+    }
+    
+    /**
+     * Returns whether or not files of the specified MIME type are worth compressing.
+     * Images, audio, video and fonts other than SVG are already compressed.
+     * 
+     * @param type the MIME type.
+     * @return <code>true</code>, if the type is compressible, <code>false</code>
+     * otherwise.
+     */
+    static boolean isCompressible(String type) {
+        return type.startsWith("text/") || type.startsWith("application/javascript") || type.startsWith("application/json")
+                || type.startsWith("application/xml") || type.equals("image/svg+xml") || type.equals("application/wasm")
+                || type.equals("font/ttf") || type.equals("font/otf") || type.equals("image/x-icon");
+    }
+}
@@ -0,0 +1,26 @@
+package ws2d.core.server;
+
+/**
+ * The ways in which the game loop recovers when ticks take longer than their
+ * period, so that the next tick is already due when the current one ends.
+ * 
+ * @author Ian
+ */
+public enum OverrunPolicy {
+    /**
+     * Overdue ticks are run back to back until the loop is on schedule again.
+     * Ticks beyond the maximum number of catch-up ticks are dropped, so a long
+     * stall does not cause a burst of ticks.
+     */
+    CATCH_UP,
+    /**
+     * Overdue ticks are dropped, and the next tick runs at the next scheduled
+     * time, keeping the loop aligned with its original schedule.
+     */
+    SKIP,
+    /**
+     * The schedule is shifted by the overrun, so the next tick runs immediately
+     * and later ticks are spaced evenly from it. No ticks are dropped.
+     */
+    STRETCH
+}
@@ -82,6 +82,18 @@ public class Scheduler {
         tasks.remove(uid).stop();
     }
     
+    /**
+     * Returns the number of scheduled tasks, including suspended tasks. This may be
+     * called from any thread, in which case the count may be slightly out of date.
+     * 
+     * @return the number of scheduled tasks.
+     */
+    public int getTaskCount() {
+        final int[] count = new int[1];
+        tasks.forEach(task -> ++ count[0]);
+        return count[0];
+    }
+    
     /**
      * Updates all schedules tasks by calling their respective tick methods. This
      * method should be called once per tick to keep timing consistent.
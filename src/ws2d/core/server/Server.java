@@ -2,15 +2,29 @@ package ws2d.core.server;
 
 import ws2d.core.generic.Client;
 import ws2d.init.Ws2D;
+import ws2d.core.interest.InterestManager;
 import ws2d.core.network.NetworkHandler;
 import ws2d.core.network.packet.BPacketHeartbeat;
 import ws2d.core.network.packet.SPacketClientUid;
+import ws2d.core.replication.ReplicationManager;
 import ws2d.util.Logger;
 import ws2d.util.UidSet;
-import ws2d.util.Utils;
-import io.vertx.core.http.HttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.ServerWebSocket;
 import ws2d.init.Config;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * The main class of Ws2D besides the API class <code>ws2d.init.Ws2D</code>, and
@@ -25,21 +39,53 @@ public class Server extends Thread {
      */
     private final Config config;
     /**
-     * The HTTP server.
+     * The vert.x instance that runs the HTTP servers.
      */
-    private final HttpServer httpServer;
+    private final Vertx vertx;
+    /**
+     * The HTTP server instances.
+     */
+    private final HttpVerticle[] httpServers;
+    /**
+     * The handler for client file requests, which is <code>null</code> until the
+     * server starts.
+     */
+    private AssetHandler assets;
+    /**
+     * The handler for metrics scrapes, which is <code>null</code> unless metrics
+     * are enabled and the server has started.
+     */
+    private MetricsHandler metrics;
     /**
      * The network handler.
      */
     private final NetworkHandler net;
     /**
-     * The current set of WebSocket clients.
+     * The current set of WebSocket clients. It is changed on the event loops, so
+     * every access is synchronized on it.
      */
     private final UidSet<Client> clients;
+    /**
+     * A copy of the connected clients, replaced whenever the client set changes, so
+     * that they can be iterated from any thread without holding the lock.
+     */
+    private volatile Client[] clientSnapshot;
     /**
      * The server scheduler.
      */
     private final Scheduler scheduler;
+    /**
+     * The replication manager.
+     */
+    private final ReplicationManager replication;
+    /**
+     * The interest manager.
+     */
+    private final InterestManager interest;
+    /**
+     * The profiler of the game loop.
+     */
+    private final TickProfiler profiler;
     /**
      * Whether or not the game loop is running.
      */
@@ -49,6 +95,23 @@ public class Server extends Thread {
      * The server logger.
      */
     private static final Logger LOG = new Logger("SERVER");
+    /**
+     * The time in milliseconds after which a pooled packet that has not been
+     * released is reported when packet pool debugging is enabled.
+     */
+    private static final long LEAK_AGE = 5000L;
+    /**
+     * The system property that disables HTTP/2 cleartext on vert.x HTTP servers.
+     */
+    private static final String DISABLE_H2C = "vertx.disableH2c";
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    /**
+     * The minimum time in nanoseconds between warnings about dropped ticks.
+     */
+    private static final long OVERRUN_WARNING_INTERVAL = 10L * NANOS_PER_SECOND;
     
     /**
      * Constructs a new instance of <code>Server</code> with the specified, fully
@@ -58,79 +121,153 @@ public class Server extends Thread {
      */
     public Server(Config config) {
         this.config = config;
-        this.httpServer = Utils.VERTX.createHttpServer();
-        this.net = new NetworkHandler();
+        this.vertx = Vertx.vertx(new VertxOptions()
+                .setEventLoopPoolSize(config.getEventLoopPoolSize())
+                .setWorkerPoolSize(config.getWorkerPoolSize()));
+        int instances = config.getServerInstances();
+        this.httpServers = new HttpVerticle[instances > 0 ? instances : config.getEventLoopPoolSize()];
+        this.net = new NetworkHandler(this, config);
         this.clients = new UidSet(config.getMaxClients());
+        this.clientSnapshot = new Client[0];
         this.scheduler = new Scheduler();
+        this.replication = new ReplicationManager(this, config);
+        this.interest = new InterestManager(this, config);
+        this.profiler = new TickProfiler(config.getTps());
+        this.assets = null;
+        this.metrics = null;
         this.run = true;
     }
     
     /**
-     * Starts the HTTP server and game loop.
+     * Starts the HTTP servers and game loop. Each HTTP server instance is deployed
+     * separately so that it is assigned the next event loop. The instances are
+     * deployed from a single context, since deploying from outside vert.x would
+     * take up an event loop for every deployment.
+     * <p>
+     * Vert.x only reads whether HTTP/2 cleartext is disabled from the
+     * <code>vertx.disableH2c</code> system property when each HTTP server is
+     * created. When it is disabled in the configuration, the property is set until
+     * every instance has been deployed and then cleared again, so that it does not
+     * leak into other servers in the same JVM. A property set explicitly by the
+     * user is left untouched and takes precedence over the configuration.
      */
     @Override
     public void start() {
-        httpServer.requestHandler(req -> {
-            net.bindErrorHandler(req);
-            String path = req.path();
-            if(path.isEmpty() || "/".equals(path))
-                path = "/index.html";
-            path = Ws2D.getGameManager().getClientFile(path);
-            if(path == null)
-                LOG.info("Client requested file " + req.path() + ", which does not exist.");
-            else
-                req.response().sendFile(path);
-        }).websocketHandler(socket -> {
-            net.bindErrorHandler(socket);
-            net.bindMessageHandler(socket, this);
-            onClientConnect(socket);
-        }).listen(config.getHttpPort(), result -> {
-            if(result.failed()) {
-                LOG.error("Failed to start server.");
-                LOG.error(result.cause());
-                Ws2D.getInstance().shutdown();
-            }else
-                LOG.info("Hosting HTTP service on port " + config.getHttpPort());
+        assets = new AssetHandler(Ws2D.getGameManager().getAssetCache());
+        if(config.isMetrics())
+            metrics = new MetricsHandler(this);
+        final HttpServerOptions options = createServerOptions();
+        final boolean setH2c = !config.isHttp2() && System.getProperty(DISABLE_H2C) == null;
+        if(setH2c)
+            System.setProperty(DISABLE_H2C, "true");
+        else if(System.getProperty(DISABLE_H2C) != null && Boolean.getBoolean(DISABLE_H2C) == config.isHttp2())
+            LOG.warn("The " + DISABLE_H2C + " system property overrides the http2 setting.");
+        final AtomicInteger pending = new AtomicInteger(httpServers.length);
+        vertx.runOnContext(unused -> {
+            for(int i = 0;i < httpServers.length;++ i) {
+                httpServers[i] = new HttpVerticle(this, options);
+                vertx.deployVerticle(httpServers[i], result -> {
+                    boolean last = pending.decrementAndGet() == 0;
+                    if(last && setH2c)
+                        System.clearProperty(DISABLE_H2C);
+                    if(result.failed()) {
+                        LOG.error("Failed to start server.");
+                        LOG.error(result.cause());
+                        Ws2D.getInstance().shutdown();
+                    }else if(last)
+                        LOG.info("Hosting HTTP" + (config.isHttp2() ? " and h2c" : "") + " service on port " + config.getHttpPort()
+                                + " with " + httpServers.length + " instances" + (metrics != null ? ", serving metrics on " + config.getMetricsPath() : "") + ".");
+                });
+            }
         });
         super.start();
     }
     
     /**
-     * Runs the game loop.
+     * Creates the options shared by the HTTP server instances. HTTP/2 cleartext is
+     * served on the same port as HTTP/1.1, both through prior knowledge and through
+     * an <code>Upgrade</code> request, unless it is disabled in the configuration.
+     * 
+     * @return the HTTP server options.
+     */
+    private HttpServerOptions createServerOptions() {
+        HttpServerOptions options = new HttpServerOptions().setPort(config.getHttpPort());
+        if(!config.isHttp2())
+            return options;
+        return options.setInitialSettings(new Http2Settings()
+                .setMaxConcurrentStreams(config.getHttp2MaxConcurrentStreams())
+                .setInitialWindowSize(config.getHttp2InitialWindowSize()))
+                .setHttp2ConnectionWindowSize(config.getHttp2ConnectionWindowSize());
+    }
+    
+    /**
+     * Runs the game loop. Tick times are kept on a fixed schedule measured with
+     * <code>System.nanoTime</code>, where the <code>n</code>th tick after the start
+     * of the schedule is due <code>n / tps</code> seconds after it, so rounding
+     * never accumulates into drift. When a tick overruns, the overrun policy
+     * decides how the schedule recovers.
      */
     @Override
     public void run() {
-        long ticks = 0;
         final long tps = config.getTps();
-        long delay = 1000L / tps;
-        long tpsStart = System.currentTimeMillis();
+        final long period = NANOS_PER_SECOND / tps;
+        final long spin = config.getSpinWaitMicros() * 1000L;
+        final OverrunPolicy policy = config.getOverrunPolicy();
+        final long maxCatchUp = config.getMaxCatchUpTicks();
         
         if(config.getHeartbeatInterval() > 0) {
             scheduler.runTaskRepeatedly(() -> {
-                clients.forEach(client -> {
+                forEachClient(client -> {
                     if(!client.isConnectionVerified()) {
                         disconnectClient(client);
                         return;
                     }
                     client.setConnectionVerified(false);
-                    net.sendPacket(new BPacketHeartbeat(), client.getSocket());
                 });
+                net.broadcast(new BPacketHeartbeat());
             }, config.getHeartbeatInterval() * tps);
         }
         
+        if(config.isDebugPacketPools())
+            scheduler.runTaskRepeatedly(() -> Ws2D.getRegistry().getDispatcher().checkLeaks(LEAK_AGE), LEAK_AGE / 1000L * tps);
+        
+        if(metrics != null)
+            scheduler.runTaskRepeatedly(metrics::publish, tps);
+        
         scheduler.runTaskLater(() -> LOG.info("Successfully started server."), 30L);
         
+        long start = System.nanoTime(), count = 0;
+        long dropped = 0, lastWarning = start - OVERRUN_WARNING_INTERVAL;
         while(run) {
             tick();
             
-            ++ ticks;
-            if(ticks % tps == 0) {
-                long ctmillis = System.currentTimeMillis();
-                delay -= ((ctmillis - tpsStart) - 1000L) / tps;
-                tpsStart = ctmillis;
+            ++ count;
+            long deadline = start + count * NANOS_PER_SECOND / tps;
+            long now = System.nanoTime();
+            if(now < deadline) {
+                waitUntil(deadline, spin);
+                continue;
+            }
+            // the number of ticks that are already due, including the next one
+            long due = (now - deadline) / period + 1;
+            if(policy == OverrunPolicy.STRETCH) {
+                start = now;
+                count = 0;
+            }else if(policy == OverrunPolicy.SKIP) {
+                count += due;
+                dropped += due;
+                profiler.recordDropped(due);
+                waitUntil(start + count * NANOS_PER_SECOND / tps, spin);
+            }else if(due > maxCatchUp) {
+                count += due - maxCatchUp;
+                dropped += due - maxCatchUp;
+                profiler.recordDropped(due - maxCatchUp);
+            }
+            if(dropped > 0 && now - lastWarning >= OVERRUN_WARNING_INTERVAL) {
+                LOG.warn("Can't keep up with " + tps + " TPS. Dropped " + dropped + " ticks.");
+                dropped = 0;
+                lastWarning = now;
             }
-            
-            sleep0(delay);
         }
         
         interrupt();
@@ -138,11 +275,11 @@ public class Server extends Thread {
     }
     
     /**
-     * Stops the HTTP server and game loop.
+     * Stops the HTTP servers and game loop.
      */
     @Override
     public void interrupt() {
-        httpServer.close();
+        vertx.close();
         super.interrupt();
     }
     
@@ -157,24 +294,65 @@ public class Server extends Thread {
      * This is the code that is called once per tick in the game loop.
      */
     private void tick() {
+        profiler.startTick();
         scheduler.tick();
+        profiler.endPhase(TickProfiler.Phase.SCHEDULER);
+        net.processInbound();
+        profiler.endPhase(TickProfiler.Phase.INBOUND);
+        interest.tick();
+        profiler.endPhase(TickProfiler.Phase.INTEREST);
+        replication.tick();
+        profiler.endPhase(TickProfiler.Phase.REPLICATION);
+        net.flush();
+        profiler.endPhase(TickProfiler.Phase.FLUSH);
+        profiler.endTick();
+    }
+    
+    /**
+     * Called when an HTTP server instance receives a request, and serves the
+     * requested client file from memory, or the metrics if they are enabled and
+     * requested.
+     * 
+     * @param req the request.
+     */
+    void onRequest(HttpServerRequest req) {
+        if(req.version() == HttpVersion.HTTP_2) {
+            // vert.x reports an HTTP/2 stream closing once its response is sent as an error
+            req.exceptionHandler(t -> {
+                if(!(t instanceof ClosedChannelException) || !req.response().ended())
+                    LOG.warn("Encountered a network error.", t);
+            });
+        }else
+            net.bindErrorHandler(req);
+        if(metrics != null && req.path().equals(config.getMetricsPath()))
+            metrics.handle(req);
+        else
+            assets.handle(req);
     }
     
     /**
      * Called when a client connects to the server through a WebSocket connection.
+     * This is called on the event loop of whichever HTTP server instance accepted
+     * the connection, so changes to the client set are synchronized.
      * 
      * @param socket the socket.
+     * @return the new client, or <code>null</code> if the server is full.
      */
-    private void onClientConnect(ServerWebSocket socket) {
-        if(clients.isFull()) {
-            socket.close();
-            return;
+    Client onClientConnect(ServerWebSocket socket) {
+        net.bindErrorHandler(socket);
+        final Client client;
+        synchronized(clients) {
+            if(clients.isFull()) {
+                socket.close();
+                return null;
+            }
+            client = new Client(socket.resume(), config.getInboundQueueCapacity());
+            clients.add(client);
+            updateClientSnapshot();
         }
-        socket = socket.resume();
-        final Client client = new Client(socket);
-        clients.add(client);
-        client.getSocket().closeHandler(unused -> onClientDisconnect(client));
+        net.bindMessageHandler(client);
         net.sendPacket(new SPacketClientUid(client.getUid()), socket);
+        return client;
     }
     
     /**
@@ -184,7 +362,9 @@ public class Server extends Thread {
      */
     private void disconnectClient(Client client) {
         client.getSocket().close();
-        clients.remove(client);
+        removeClient(client);
+        client.getOutboundQueue().close();
+        client.getCompressionState().close();
     }
     
     /**
@@ -192,8 +372,62 @@ public class Server extends Thread {
      * 
      * @param client the client whose connection terminated.
      */
-    private void onClientDisconnect(Client client) {
-        clients.remove(client);
+    void onClientDisconnect(Client client) {
+        removeClient(client);
+        client.getOutboundQueue().close();
+        client.getCompressionState().close();
+    }
+    
+    /**
+     * Removes a client from the client set, unless its UID has already been freed
+     * and taken by another client. A client is removed both when the server
+     * disconnects it and when its connection terminates, and another event loop may
+     * accept a connection in between.
+     * 
+     * @param client the client to remove.
+     */
+    private void removeClient(Client client) {
+        synchronized(clients) {
+            if(clients.get(client.getUid()) != client)
+                return;
+            clients.remove(client.getUid());
+            updateClientSnapshot();
+        }
+    }
+    
+    /**
+     * Replaces the copy of the connected clients. This is only called while
+     * holding the lock on the client set.
+     */
+    private void updateClientSnapshot() {
+        List<Client> snapshot = new ArrayList<>();
+        clients.forEach(snapshot::add);
+        clientSnapshot = snapshot.toArray(new Client[snapshot.size()]);
+    }
+    
+    /**
+     * Returns the vert.x instance that runs the HTTP servers.
+     * 
+     * @return the vert.x instance.
+     */
+    public Vertx getVertx() {
+        return vertx;
+    }
+    
+    /**
+     * Returns the number of sockets connected through each HTTP server instance,
+     * keyed by the name of the instance's event loop thread.
+     * 
+     * @return the number of connections on each event loop.
+     */
+    public Map<String, Integer> getConnectionCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for(HttpVerticle httpServer : httpServers) {
+            String thread = httpServer == null ? null : httpServer.getThreadName();
+            if(thread != null)
+                counts.merge(thread, httpServer.getConnections(), Integer::sum);
+        }
+        return counts;
     }
     
     /**
@@ -205,6 +439,15 @@ public class Server extends Thread {
         return scheduler;
     }
     
+    /**
+     * Returns the profiler of the game loop.
+     * 
+     * @return the tick profiler.
+     */
+    public TickProfiler getProfiler() {
+        return profiler;
+    }
+    
     /**
      * Returns the network handler for this server instance.
      * 
@@ -214,6 +457,24 @@ public class Server extends Thread {
         return net;
     }
     
+    /**
+     * Returns the replication manager for this server instance.
+     * 
+     * @return the replication manager for this server instance.
+     */
+    public ReplicationManager getReplicationManager() {
+        return replication;
+    }
+    
+    /**
+     * Returns the interest manager for this server instance.
+     * 
+     * @return the interest manager for this server instance.
+     */
+    public InterestManager getInterestManager() {
+        return interest;
+    }
+    
     /**
      * Gets the client with the specified unique ID.
      * 
@@ -221,20 +482,42 @@ public class Server extends Thread {
      * @return the client with the unique ID.
      */
     public Client getClient(int uid) {
-        return clients.get(uid);
+        synchronized(clients) {
+            return clients.get(uid);
+        }
+    }
+    
+    /**
+     * Performs an action with each connected client. The clients are those that
+     * were connected when this was called, so clients may connect and disconnect
+     * on the event loops, or be disconnected by the action, while they are being
+     * iterated. This may be called from any thread.
+     * 
+     * @param action the action to perform with each client.
+     */
+    public void forEachClient(Consumer<? super Client> action) {
+        for(Client client : clientSnapshot)
+            action.accept(client);
     }
     
     /**
-     * This method is equivalent to <code>Thread.sleep</code>, however, it silences
-     * any exceptions.
+     * Waits until the specified time. The thread is parked until the time is close,
+     * and then spins for the rest of the wait, since parking may overshoot by tens
+     * of microseconds. Interrupts are ignored.
      * 
-     * @param delay the amount of milliseconds to wait.
+     * @param deadline the <code>System.nanoTime</code> value to wait for.
+     * @param spin the number of nanoseconds before the deadline at which to stop
+     * parking and start spinning.
      */
-    private static void sleep0(long delay) {
-        if(delay <= 0)
-            return;
-        try {
-            Thread.sleep(delay);
-        }catch(Throwable t) { }
+    private static void waitUntil(long deadline, long spin) {
+        for(;;) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0)
+                return;
+            if(remaining > spin)
+                LockSupport.parkNanos(remaining - spin);
+            // parking returns immediately while the thread is interrupted
+            Thread.interrupted();
+        }
     }
 }
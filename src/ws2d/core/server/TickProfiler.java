@@ -0,0 +1,271 @@
+package ws2d.core.server;
+
+import ws2d.util.LatencyHistogram;
+
+/**
+ * Measures how long each tick of the game loop and each of its phases takes. The
+ * game loop stamps the end of every phase with <code>System.nanoTime</code>, and
+ * the durations are recorded in histograms, so the profiler can run all the time.
+ * It also measures the actual ticks per second and counts ticks that took longer
+ * than their period or were dropped by the overrun policy.
+ * <p>
+ * Only the game loop records into the profiler. Other threads may read it at any
+ * time, and request a reset, which the game loop carries out before the next tick.
+ * 
+ * @author Ian
+ */
+public final class TickProfiler {
+    /**
+     * The phases of a tick, in the order in which they run.
+     */
+    public enum Phase {
+        /**
+         * Running scheduled tasks, which includes most game logic.
+         */
+        SCHEDULER("Scheduler"),
+        /**
+         * Handling queued inbound packets, which includes the game's packet handlers.
+         */
+        INBOUND("Inbound"),
+        /**
+         * Updating the interest grid.
+         */
+        INTEREST("Interest"),
+        /**
+         * Replicating entity state.
+         */
+        REPLICATION("Replication"),
+        /**
+         * Flushing queued outbound packets.
+         */
+        FLUSH("Flush");
+        
+        /**
+         * The display name of the phase.
+         */
+        private final String displayName;
+        
+        /**
+         * Constructs a new instance of <code>Phase</code> with a display name.
+         * 
+         * @param displayName the display name.
+         */
+        private Phase(String displayName) {
+            this.displayName = displayName;
+        }
+        
+        /**
+         * Returns the display name of the phase.
+         * 
+         * @return the display name.
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+    
+    /**
+     * The durations of each phase, indexed by phase ordinal.
+     */
+    private final LatencyHistogram[] phases;
+    /**
+     * The durations of whole ticks.
+     */
+    private final LatencyHistogram ticks;
+    /**
+     * The target ticks per second.
+     */
+    private final int targetTps;
+    /**
+     * The period of a tick in nanoseconds.
+     */
+    private final long period;
+    /**
+     * The time the current tick started.
+     */
+    private long tickStart;
+    /**
+     * The time the current phase started.
+     */
+    private long phaseStart;
+    /**
+     * The number of ticks that took longer than their period.
+     */
+    private volatile long overruns;
+    /**
+     * The number of ticks dropped by the overrun policy.
+     */
+    private volatile long dropped;
+    /**
+     * The start of the current window over which the ticks per second are measured.
+     */
+    private long windowStart;
+    /**
+     * The number of ticks started in the current window.
+     */
+    private int windowTicks;
+    /**
+     * The ticks per second measured over the last complete window.
+     */
+    private volatile double tps;
+    /**
+     * Whether or not a reset was requested.
+     */
+    private volatile boolean resetRequested;
+    
+    /**
+     * The length of the window over which the ticks per second are measured.
+     */
+    private static final long TPS_WINDOW = 1000000000L;
+    
+    /**
+     * Constructs a new instance of <code>TickProfiler</code> for the specified
+     * target ticks per second.
+     * 
+     * @param targetTps the target ticks per second.
+     */
+    public TickProfiler(int targetTps) {
+        Phase[] values = Phase.values();
+        this.phases = new LatencyHistogram[values.length];
+        for(int i = 0;i < values.length;++ i)
+            phases[i] = new LatencyHistogram();
+        this.ticks = new LatencyHistogram();
+        this.targetTps = targetTps;
+        this.period = TPS_WINDOW / targetTps;
+        this.tickStart = 0;
+        this.phaseStart = 0;
+        this.overruns = 0;
+        this.dropped = 0;
+        this.windowStart = System.nanoTime();
+        this.windowTicks = 0;
+        this.tps = targetTps;
+        this.resetRequested = false;
+    }
+    
+    /**
+     * Marks the start of a tick. Called by the game loop.
+     */
+    void startTick() {
+        if(resetRequested) {
+            resetRequested = false;
+            for(LatencyHistogram phase : phases)
+                phase.reset();
+            ticks.reset();
+            overruns = 0;
+            dropped = 0;
+        }
+        long now = System.nanoTime();
+        if(now - windowStart >= TPS_WINDOW) {
+            tps = windowTicks * (double)TPS_WINDOW / (now - windowStart);
+            windowStart = now;
+            windowTicks = 0;
+        }
+        ++ windowTicks;
+        tickStart = now;
+        phaseStart = now;
+    }
+    
+    /**
+     * Marks the end of a phase of the current tick, which is also the start of
+     * the next phase. Called by the game loop.
+     * 
+     * @param phase the phase that ended.
+     */
+    void endPhase(Phase phase) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].record(now - phaseStart);
+        phaseStart = now;
+    }
+    
+    /**
+     * Marks the end of the current tick. Called by the game loop after the last
+     * phase has ended.
+     */
+    void endTick() {
+        long duration = phaseStart - tickStart;
+        ticks.record(duration);
+        if(duration > period)
+            ++ overruns;
+    }
+    
+    /**
+     * Records ticks dropped by the overrun policy. Called by the game loop.
+     * 
+     * @param count the number of dropped ticks.
+     */
+    void recordDropped(long count) {
+        dropped += count;
+    }
+    
+    /**
+     * Requests that every measurement is cleared. The game loop clears them before
+     * its next tick.
+     */
+    public void reset() {
+        resetRequested = true;
+    }
+    
+    /**
+     * Returns the durations of a phase.
+     * 
+     * @param phase the phase.
+     * @return the histogram of the phase's durations in nanoseconds.
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+    
+    /**
+     * Returns the durations of whole ticks.
+     * 
+     * @return the histogram of tick durations in nanoseconds.
+     */
+    public LatencyHistogram getTickHistogram() {
+        return ticks;
+    }
+    
+    /**
+     * Returns the number of ticks that took longer than their period.
+     * 
+     * @return the number of overrun ticks.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+    
+    /**
+     * Returns the number of ticks dropped by the overrun policy.
+     * 
+     * @return the number of dropped ticks.
+     */
+    public long getDroppedTicks() {
+        return dropped;
+    }
+    
+    /**
+     * Returns the ticks per second measured over the last second.
+     * 
+     * @return the measured ticks per second.
+     */
+    public double getTps() {
+        return tps;
+    }
+    
+    /**
+     * Returns the target ticks per second.
+     * 
+     * @return the target ticks per second.
+     */
+    public int getTargetTps() {
+        return targetTps;
+    }
+    
+    /**
+     * Returns the period of a tick.
+     * 
+     * @return the tick period in nanoseconds.
+     */
+    public long getPeriod() {
+        return period;
+    }
+}
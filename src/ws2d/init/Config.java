@@ -1,5 +1,8 @@
 package ws2d.init;
 
+import io.vertx.core.VertxOptions;
+import ws2d.core.network.SlowClientPolicy;
+import ws2d.core.server.OverrunPolicy;
 import stg.json.JsonObject;
 
 /**
@@ -24,6 +27,163 @@ public final class Config {
      * How often (in seconds) a heartbeat packet is emitted.
      */
     private int heartbeatInterval;
+    /**
+     * Whether or not packets are bundled into one frame per client each tick.
+     */
+    private boolean batchPackets;
+    /**
+     * Whether or not inbound packets are handled on the game loop thread.
+     */
+    private boolean queueInboundPackets;
+    /**
+     * The maximum number of inbound packets queued for each client.
+     */
+    private int inboundQueueCapacity;
+    /**
+     * The maximum number of queued inbound packets handled per tick.
+     */
+    private int inboundPacketBudget;
+    /**
+     * Whether or not packet pools track their instances to detect leaks.
+     */
+    private boolean debugPacketPools;
+    /**
+     * The number of ticks between replication snapshots.
+     */
+    private int replicationInterval;
+    /**
+     * The number of replication snapshots kept as baselines.
+     */
+    private int replicationHistory;
+    /**
+     * The width and height of each cell of the interest grid.
+     */
+    private int interestCellSize;
+    /**
+     * Whether or not outbound frames are compressed.
+     */
+    private boolean compression;
+    /**
+     * The smallest outbound frame that is compressed.
+     */
+    private int compressionThreshold;
+    /**
+     * The DEFLATE compression level.
+     */
+    private int compressionLevel;
+    /**
+     * Whether or not each client's compression history carries over between frames.
+     */
+    private boolean compressionContextTakeover;
+    /**
+     * The path of the preset compression dictionary in the game jar.
+     */
+    private String compressionDictionaryPath;
+    /**
+     * The preset compression dictionary.
+     */
+    private byte[] compressionDictionary;
+    /**
+     * The number of packets each client may send per second.
+     */
+    private int packetRateLimit;
+    /**
+     * The number of packets each client may send at once.
+     */
+    private int packetRateBurst;
+    /**
+     * The number of rate limit strikes after which a client is paused.
+     */
+    private int rateLimitPauseStrikes;
+    /**
+     * The number of rate limit strikes after which a client is disconnected.
+     */
+    private int rateLimitDisconnectStrikes;
+    /**
+     * The number of event loop threads.
+     */
+    private int eventLoopPoolSize;
+    /**
+     * The number of worker threads.
+     */
+    private int workerPoolSize;
+    /**
+     * The number of HTTP server instances sharing the port.
+     */
+    private int serverInstances;
+    /**
+     * The number of queued bytes above which a client is slow.
+     */
+    private int writeQueueHighWatermark;
+    /**
+     * The number of queued bytes below which a slow client is no longer slow.
+     */
+    private int writeQueueLowWatermark;
+    /**
+     * The treatment of slow clients.
+     */
+    private SlowClientPolicy slowClientPolicy;
+    /**
+     * The number of seconds a client may be slow before it is disconnected.
+     */
+    private int slowClientTimeout;
+    /**
+     * The multiple of the high watermark above which a client's queued bytes
+     * disconnect it.
+     */
+    private int writeQueueLimit;
+    /**
+     * Whether or not client assets are served from content-fingerprinted paths.
+     */
+    private boolean fingerprintAssets;
+    /**
+     * Whether or not client assets are packed into a memory-mapped file.
+     */
+    private boolean packAssets;
+    /**
+     * Whether or not client scripts, stylesheets and HTML files are minified.
+     */
+    private boolean minifyAssets;
+    /**
+     * Whether or not the scripts included by the main HTML file are bundled.
+     */
+    private boolean bundleScripts;
+    /**
+     * The treatment of ticks that take longer than their period.
+     */
+    private OverrunPolicy overrunPolicy;
+    /**
+     * The maximum number of overdue ticks run back to back to catch up.
+     */
+    private int maxCatchUpTicks;
+    /**
+     * The number of microseconds before each tick spent spinning instead of parked.
+     */
+    private int spinWaitMicros;
+    /**
+     * Whether or not HTTP/2 cleartext is served alongside HTTP/1.1.
+     */
+    private boolean http2;
+    /**
+     * The maximum number of concurrent HTTP/2 streams on a connection.
+     */
+    private int http2MaxConcurrentStreams;
+    /**
+     * The initial flow control window of each HTTP/2 stream, in bytes.
+     */
+    private int http2InitialWindowSize;
+    /**
+     * The flow control window of each HTTP/2 connection, in bytes.
+     */
+    private int http2ConnectionWindowSize;
+    /**
+     * Whether or not metrics are served in the Prometheus text format.
+     */
+    private boolean metrics;
+    /**
+     * The HTTP path metrics are served on.
+     */
+    private String metricsPath;
     
     /**
      * Constructs a new instance of <code>Config</code> with an optional <code>JsonObject</code>
@@ -36,6 +196,45 @@ public final class Config {
         this.tps = 20;
         this.maxClients = 20;
         this.heartbeatInterval = 60;
+        this.batchPackets = false;
+        this.queueInboundPackets = false;
+        this.inboundQueueCapacity = 256;
+        this.inboundPacketBudget = 4096;
+        this.debugPacketPools = false;
+        this.replicationInterval = 1;
+        this.replicationHistory = 32;
+        this.interestCellSize = 256;
+        this.compression = false;
+        this.compressionThreshold = 128;
+        this.compressionLevel = 6;
+        this.compressionContextTakeover = false;
+        this.compressionDictionaryPath = null;
+        this.compressionDictionary = null;
+        this.packetRateLimit = 0;
+        this.packetRateBurst = 0;
+        this.rateLimitPauseStrikes = 3;
+        this.rateLimitDisconnectStrikes = 10;
+        this.eventLoopPoolSize = VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE;
+        this.workerPoolSize = VertxOptions.DEFAULT_WORKER_POOL_SIZE;
+        this.serverInstances = 0;
+        this.writeQueueHighWatermark = 1048576;
+        this.writeQueueLowWatermark = 524288;
+        this.slowClientPolicy = SlowClientPolicy.DROP;
+        this.slowClientTimeout = 10;
+        this.writeQueueLimit = 4;
+        this.fingerprintAssets = true;
+        this.packAssets = true;
+        this.minifyAssets = false;
+        this.bundleScripts = false;
+        this.overrunPolicy = OverrunPolicy.CATCH_UP;
+        this.maxCatchUpTicks = 5;
+        this.spinWaitMicros = 0;
+        this.http2 = false;
+        this.http2MaxConcurrentStreams = 100;
+        this.http2InitialWindowSize = 262144;
+        this.http2ConnectionWindowSize = 1048576;
+        this.metrics = false;
+        this.metricsPath = "/metrics";
         if(data == null)
             return;
         if(data.hasTag("httpPort"))
@@ -46,6 +245,88 @@ public final class Config {
             setMaxClients(data.getNumberAsInteger("maxClients"));
         if(data.hasTag("heartbeatInterval"))
             setHeartbeatInterval(data.getNumberAsInteger("heartbeatInterval"));
+        if(data.hasTag("batchPackets"))
+            setBatchPackets(data.getBoolean("batchPackets"));
+        if(data.hasTag("queueInboundPackets"))
+            setQueueInboundPackets(data.getBoolean("queueInboundPackets"));
+        if(data.hasTag("inboundQueueCapacity"))
+            setInboundQueueCapacity(data.getNumberAsInteger("inboundQueueCapacity"));
+        if(data.hasTag("inboundPacketBudget"))
+            setInboundPacketBudget(data.getNumberAsInteger("inboundPacketBudget"));
+        if(data.hasTag("debugPacketPools"))
+            setDebugPacketPools(data.getBoolean("debugPacketPools"));
+        if(data.hasTag("replicationInterval"))
+            setReplicationInterval(data.getNumberAsInteger("replicationInterval"));
+        if(data.hasTag("replicationHistory"))
+            setReplicationHistory(data.getNumberAsInteger("replicationHistory"));
+        if(data.hasTag("interestCellSize"))
+            setInterestCellSize(data.getNumberAsInteger("interestCellSize"));
+        if(data.hasTag("compression"))
+            setCompression(data.getBoolean("compression"));
+        if(data.hasTag("compressionThreshold"))
+            setCompressionThreshold(data.getNumberAsInteger("compressionThreshold"));
+        if(data.hasTag("compressionLevel"))
+            setCompressionLevel(data.getNumberAsInteger("compressionLevel"));
+        if(data.hasTag("compressionContextTakeover"))
+            setCompressionContextTakeover(data.getBoolean("compressionContextTakeover"));
+        if(data.hasTag("compressionDictionary"))
+            setCompressionDictionaryPath(data.getString("compressionDictionary"));
+        if(data.hasTag("packetRateLimit"))
+            setPacketRateLimit(data.getNumberAsInteger("packetRateLimit"));
+        if(data.hasTag("packetRateBurst"))
+            setPacketRateBurst(data.getNumberAsInteger("packetRateBurst"));
+        if(data.hasTag("rateLimitPauseStrikes"))
+            setRateLimitPauseStrikes(data.getNumberAsInteger("rateLimitPauseStrikes"));
+        if(data.hasTag("rateLimitDisconnectStrikes"))
+            setRateLimitDisconnectStrikes(data.getNumberAsInteger("rateLimitDisconnectStrikes"));
+        if(data.hasTag("eventLoopPoolSize"))
+            setEventLoopPoolSize(data.getNumberAsInteger("eventLoopPoolSize"));
+        if(data.hasTag("workerPoolSize"))
+            setWorkerPoolSize(data.getNumberAsInteger("workerPoolSize"));
+        if(data.hasTag("serverInstances"))
+            setServerInstances(data.getNumberAsInteger("serverInstances"));
+        if(data.hasTag("writeQueueHighWatermark"))
+            setWriteQueueHighWatermark(data.getNumberAsInteger("writeQueueHighWatermark"));
+        if(data.hasTag("writeQueueLowWatermark"))
+            setWriteQueueLowWatermark(data.getNumberAsInteger("writeQueueLowWatermark"));
+        if(data.hasTag("slowClientPolicy")) {
+            try {
+                setSlowClientPolicy(SlowClientPolicy.valueOf(data.getString("slowClientPolicy").toUpperCase()));
+            }catch(IllegalArgumentException ex) { }
+        }
+        if(data.hasTag("slowClientTimeout"))
+            setSlowClientTimeout(data.getNumberAsInteger("slowClientTimeout"));
+        if(data.hasTag("writeQueueLimit"))
+            setWriteQueueLimit(data.getNumberAsInteger("writeQueueLimit"));
+        if(data.hasTag("fingerprintAssets"))
+            setFingerprintAssets(data.getBoolean("fingerprintAssets"));
+        if(data.hasTag("packAssets"))
+            setPackAssets(data.getBoolean("packAssets"));
+        if(data.hasTag("minifyAssets"))
+            setMinifyAssets(data.getBoolean("minifyAssets"));
+        if(data.hasTag("bundleScripts"))
+            setBundleScripts(data.getBoolean("bundleScripts"));
+        if(data.hasTag("overrunPolicy")) {
+            try {
+                setOverrunPolicy(OverrunPolicy.valueOf(data.getString("overrunPolicy").toUpperCase()));
+            }catch(IllegalArgumentException ex) { }
+        }
+        if(data.hasTag("maxCatchUpTicks"))
+            setMaxCatchUpTicks(data.getNumberAsInteger("maxCatchUpTicks"));
+        if(data.hasTag("spinWaitMicros"))
+            setSpinWaitMicros(data.getNumberAsInteger("spinWaitMicros"));
+        if(data.hasTag("http2"))
+            setHttp2(data.getBoolean("http2"));
+        if(data.hasTag("http2MaxConcurrentStreams"))
+            setHttp2MaxConcurrentStreams(data.getNumberAsInteger("http2MaxConcurrentStreams"));
+        if(data.hasTag("http2InitialWindowSize"))
+            setHttp2InitialWindowSize(data.getNumberAsInteger("http2InitialWindowSize"));
+        if(data.hasTag("http2ConnectionWindowSize"))
+            setHttp2ConnectionWindowSize(data.getNumberAsInteger("http2ConnectionWindowSize"));
+        if(data.hasTag("metrics"))
+            setMetrics(data.getBoolean("metrics"));
+        if(data.hasTag("metricsPath"))
+            setMetricsPath(data.getString("metricsPath"));
     }
 
     /**
@@ -140,4 +421,897 @@ public final class Config {
             return;
         this.heartbeatInterval = heartbeatInterval;
     }
+
+    /**
+     * Returns whether or not packets sent to a client during a tick are bundled
+     * into a single frame at the end of the tick.
+     * 
+     * @return <code>true</code>, if packets are batched, <code>false</code> otherwise.
+     */
+    public boolean isBatchPackets() {
+        return batchPackets;
+    }
+
+    /**
+     * Sets whether or not packets sent to a client during a tick are bundled into
+     * a single frame at the end of the tick. Clients must be able to read bundle
+     * frames when this is enabled. It is also important to note that this function
+     * has no effect if it is called after the server starts.
+     * 
+     * @param batchPackets whether or not to batch packets.
+     */
+    public void setBatchPackets(boolean batchPackets) {
+        this.batchPackets = batchPackets;
+    }
+
+    /**
+     * Returns whether or not inbound packets are queued and handled on the game
+     * loop thread rather than on the network threads.
+     * 
+     * @return <code>true</code>, if inbound packets are queued, <code>false</code>
+     * otherwise.
+     */
+    public boolean isQueueInboundPackets() {
+        return queueInboundPackets;
+    }
+
+    /**
+     * Sets whether or not inbound packets are queued and handled on the game loop
+     * thread rather than on the network threads. It is also important to note that
+     * this function has no effect if it is called after the server starts.
+     * 
+     * @param queueInboundPackets whether or not to queue inbound packets.
+     */
+    public void setQueueInboundPackets(boolean queueInboundPackets) {
+        this.queueInboundPackets = queueInboundPackets;
+    }
+
+    /**
+     * Returns the maximum number of inbound packets that can be queued for a single
+     * client before its socket is paused.
+     * 
+     * @return the capacity of each client's inbound queue.
+     */
+    public int getInboundQueueCapacity() {
+        return inboundQueueCapacity;
+    }
+
+    /**
+     * Sets the capacity of each client's inbound queue to the specified value. If
+     * this value does not satisfy the condition <code>0 &lt; capacity</code> no
+     * action is taken. It is also important to note that this function has no
+     * effect on clients that are already connected.
+     * 
+     * @param inboundQueueCapacity the new inbound queue capacity.
+     */
+    public void setInboundQueueCapacity(int inboundQueueCapacity) {
+        if(inboundQueueCapacity < 1)
+            return;
+        this.inboundQueueCapacity = inboundQueueCapacity;
+    }
+
+    /**
+     * Returns the maximum number of queued inbound packets that are handled in a
+     * single tick across all clients.
+     * 
+     * @return the inbound packet budget per tick.
+     */
+    public int getInboundPacketBudget() {
+        return inboundPacketBudget;
+    }
+
+    /**
+     * Sets the maximum number of queued inbound packets handled per tick to the
+     * specified value. If this value does not satisfy the condition
+     * <code>0 &lt; budget</code> no action is taken. It is also important to note
+     * that this function has no effect if it is called after the server starts.
+     * 
+     * @param inboundPacketBudget the new inbound packet budget.
+     */
+    public void setInboundPacketBudget(int inboundPacketBudget) {
+        if(inboundPacketBudget < 1)
+            return;
+        this.inboundPacketBudget = inboundPacketBudget;
+    }
+
+    /**
+     * Returns whether or not packet pools track their instances to detect packets
+     * that are released twice or never released.
+     * 
+     * @return <code>true</code>, if packet pools are in debug mode, <code>false</code>
+     * otherwise.
+     */
+    public boolean isDebugPacketPools() {
+        return debugPacketPools;
+    }
+
+    /**
+     * Sets whether or not packet pools track their instances to detect packets that
+     * are released twice or never released. This adds overhead to every pooled
+     * packet and should only be enabled while developing. It is also important to
+     * note that this function has no effect if it is called after initialization.
+     * 
+     * @param debugPacketPools whether or not to enable packet pool debugging.
+     */
+    public void setDebugPacketPools(boolean debugPacketPools) {
+        this.debugPacketPools = debugPacketPools;
+    }
+
+    /**
+     * Returns the number of ticks between replication snapshots.
+     * 
+     * @return the replication interval in ticks.
+     */
+    public int getReplicationInterval() {
+        return replicationInterval;
+    }
+
+    /**
+     * Sets the number of ticks between replication snapshots to the specified value.
+     * If this value does not satisfy the condition <code>0 &lt; interval</code> no
+     * action is taken. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param replicationInterval the new replication interval in ticks.
+     */
+    public void setReplicationInterval(int replicationInterval) {
+        if(replicationInterval < 1)
+            return;
+        this.replicationInterval = replicationInterval;
+    }
+
+    /**
+     * Returns the number of replication snapshots that are kept as baselines. A
+     * client that has not acknowledged any of these snapshots is sent every object.
+     * 
+     * @return the replication history size.
+     */
+    public int getReplicationHistory() {
+        return replicationHistory;
+    }
+
+    /**
+     * Sets the number of replication snapshots that are kept as baselines to the
+     * specified value. If this value does not satisfy the condition
+     * <code>1 &lt; history &lt;= 1024</code> no action is taken. It is also important
+     * to note that this function has no effect if it is called after the server
+     * starts.
+     * 
+     * @param replicationHistory the new replication history size.
+     */
+    public void setReplicationHistory(int replicationHistory) {
+        if(replicationHistory < 2 || replicationHistory > 1024)
+            return;
+        this.replicationHistory = replicationHistory;
+    }
+
+    /**
+     * Returns the width and height of each cell of the grid used for interest
+     * management, in world units.
+     * 
+     * @return the interest cell size.
+     */
+    public int getInterestCellSize() {
+        return interestCellSize;
+    }
+
+    /**
+     * Sets the width and height of each cell of the grid used for interest management
+     * to the specified value. This should be close to the size of a typical client
+     * view. If this value does not satisfy the condition <code>0 &lt; size</code>
+     * no action is taken. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param interestCellSize the new interest cell size.
+     */
+    public void setInterestCellSize(int interestCellSize) {
+        if(interestCellSize < 1)
+            return;
+        this.interestCellSize = interestCellSize;
+    }
+
+    /**
+     * Returns whether or not outbound frames are compressed.
+     * 
+     * @return <code>true</code>, if outbound frames are compressed, <code>false</code>
+     * otherwise.
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets whether or not outbound frames are compressed. Compressed frames are
+     * marked with the ID of <code>BPacketCompressed</code> and must be inflated by
+     * the client. It is also important to note that this function has no effect if
+     * it is called after the server starts.
+     * 
+     * @param compression whether or not to compress outbound frames.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the size in bytes of the smallest outbound frame that is compressed.
+     * 
+     * @return the compression threshold.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Sets the size in bytes of the smallest outbound frame that is compressed to
+     * the specified value. If this value does not satisfy the condition
+     * <code>0 &lt;= threshold</code> no action is taken. It is also important to
+     * note that this function has no effect if it is called after the server starts.
+     * 
+     * @param compressionThreshold the new compression threshold.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        if(compressionThreshold < 0)
+            return;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Returns the DEFLATE compression level, where <code>1</code> is the fastest
+     * and <code>9</code> compresses the most.
+     * 
+     * @return the compression level.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the DEFLATE compression level to the specified value. If this value does
+     * not satisfy the condition <code>0 &lt;= level &lt;= 9</code> no action is
+     * taken. It is also important to note that this function has no effect if it
+     * is called after the server starts.
+     * 
+     * @param compressionLevel the new compression level.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if(compressionLevel < 0 || compressionLevel > 9)
+            return;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns whether or not each client's compression history carries over between
+     * frames.
+     * 
+     * @return <code>true</code>, if context takeover is enabled, <code>false</code>
+     * otherwise.
+     */
+    public boolean isCompressionContextTakeover() {
+        return compressionContextTakeover;
+    }
+
+    /**
+     * Sets whether or not each client's compression history carries over between
+     * frames. This compresses better but keeps a compressor of roughly 256KB in memory
+     * for every client, and prevents a frame sent to several clients from being
+     * compressed only once. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param compressionContextTakeover whether or not to enable context takeover.
+     */
+    public void setCompressionContextTakeover(boolean compressionContextTakeover) {
+        this.compressionContextTakeover = compressionContextTakeover;
+    }
+
+    /**
+     * Returns the path of the preset compression dictionary in the game jar.
+     * 
+     * @return the dictionary path, or <code>null</code> if there is no dictionary.
+     */
+    public String getCompressionDictionaryPath() {
+        return compressionDictionaryPath;
+    }
+
+    /**
+     * Sets the path of the preset compression dictionary in the game jar. The
+     * dictionary is loaded when the game jar is loaded.
+     * 
+     * @param compressionDictionaryPath the new dictionary path.
+     */
+    public void setCompressionDictionaryPath(String compressionDictionaryPath) {
+        this.compressionDictionaryPath = compressionDictionaryPath;
+    }
+
+    /**
+     * Returns the preset compression dictionary.
+     * 
+     * @return the dictionary, or <code>null</code> if there is none.
+     */
+    public byte[] getCompressionDictionary() {
+        return compressionDictionary;
+    }
+
+    /**
+     * Sets the preset compression dictionary. The client must inflate frames with
+     * the same dictionary. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param compressionDictionary the new dictionary, or <code>null</code>.
+     */
+    public void setCompressionDictionary(byte[] compressionDictionary) {
+        this.compressionDictionary = compressionDictionary;
+    }
+
+    /**
+     * Returns the number of packets each client may send per second.
+     * 
+     * @return the packet rate limit, or <code>0</code> if there is no limit.
+     */
+    public int getPacketRateLimit() {
+        return packetRateLimit;
+    }
+
+    /**
+     * Sets the number of packets each client may send per second to the specified
+     * value. Packets over the limit are dropped using only their ID, before they
+     * are deserialized. A value of <code>0</code> disables the limit. If this value
+     * does not satisfy the condition <code>0 &lt;= limit</code> no action is taken.
+     * It is also important to note that this function has no effect if it is called
+     * after the server starts.
+     * 
+     * @param packetRateLimit the new packet rate limit.
+     */
+    public void setPacketRateLimit(int packetRateLimit) {
+        if(packetRateLimit < 0)
+            return;
+        this.packetRateLimit = packetRateLimit;
+    }
+
+    /**
+     * Returns the number of packets each client may send at once. A value lower
+     * than the packet rate limit means the burst is equal to the rate limit.
+     * 
+     * @return the packet rate burst.
+     */
+    public int getPacketRateBurst() {
+        return packetRateBurst;
+    }
+
+    /**
+     * Sets the number of packets each client may send at once to the specified
+     * value. If this value does not satisfy the condition <code>0 &lt;= burst</code>
+     * no action is taken. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param packetRateBurst the new packet rate burst.
+     */
+    public void setPacketRateBurst(int packetRateBurst) {
+        if(packetRateBurst < 0)
+            return;
+        this.packetRateBurst = packetRateBurst;
+    }
+
+    /**
+     * Returns the number of rate limit strikes after which a client is paused for
+     * a second. A client gets a strike for each second in which it has packets
+     * dropped.
+     * 
+     * @return the number of strikes before pausing.
+     */
+    public int getRateLimitPauseStrikes() {
+        return rateLimitPauseStrikes;
+    }
+
+    /**
+     * Sets the number of rate limit strikes after which a client is paused for a
+     * second to the specified value. If this value does not satisfy the condition
+     * <code>1 &lt;= strikes</code> no action is taken.
+     * 
+     * @param rateLimitPauseStrikes the new number of strikes before pausing.
+     */
+    public void setRateLimitPauseStrikes(int rateLimitPauseStrikes) {
+        if(rateLimitPauseStrikes < 1)
+            return;
+        this.rateLimitPauseStrikes = rateLimitPauseStrikes;
+    }
+
+    /**
+     * Returns the number of rate limit strikes after which a client is disconnected.
+     * 
+     * @return the number of strikes before disconnecting.
+     */
+    public int getRateLimitDisconnectStrikes() {
+        return rateLimitDisconnectStrikes;
+    }
+
+    /**
+     * Sets the number of rate limit strikes after which a client is disconnected to
+     * the specified value. If this value does not satisfy the condition
+     * <code>1 &lt;= strikes</code> no action is taken.
+     * 
+     * @param rateLimitDisconnectStrikes the new number of strikes before disconnecting.
+     */
+    public void setRateLimitDisconnectStrikes(int rateLimitDisconnectStrikes) {
+        if(rateLimitDisconnectStrikes < 1)
+            return;
+        this.rateLimitDisconnectStrikes = rateLimitDisconnectStrikes;
+    }
+
+    /**
+     * Returns the number of event loop threads that handle network I/O.
+     * 
+     * @return the event loop pool size.
+     */
+    public int getEventLoopPoolSize() {
+        return eventLoopPoolSize;
+    }
+
+    /**
+     * Sets the number of event loop threads that handle network I/O to the specified
+     * value. The default is twice the number of available processors. If this value
+     * does not satisfy the condition <code>1 &lt;= size</code> no action is taken.
+     * It is also important to note that this function has no effect if it is called
+     * after the server is created.
+     * 
+     * @param eventLoopPoolSize the new event loop pool size.
+     */
+    public void setEventLoopPoolSize(int eventLoopPoolSize) {
+        if(eventLoopPoolSize < 1)
+            return;
+        this.eventLoopPoolSize = eventLoopPoolSize;
+    }
+
+    /**
+     * Returns the number of worker threads that run blocking code.
+     * 
+     * @return the worker pool size.
+     */
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    /**
+     * Sets the number of worker threads that run blocking code to the specified
+     * value. If this value does not satisfy the condition <code>1 &lt;= size</code>
+     * no action is taken. It is also important to note that this function has no
+     * effect if it is called after the server is created.
+     * 
+     * @param workerPoolSize the new worker pool size.
+     */
+    public void setWorkerPoolSize(int workerPoolSize) {
+        if(workerPoolSize < 1)
+            return;
+        this.workerPoolSize = workerPoolSize;
+    }
+
+    /**
+     * Returns the number of HTTP server instances sharing the port. Each instance
+     * runs on its own event loop, and connections are spread between them.
+     * 
+     * @return the number of server instances, or <code>0</code> if there is one
+     * instance for each event loop.
+     */
+    public int getServerInstances() {
+        return serverInstances;
+    }
+
+    /**
+     * Sets the number of HTTP server instances sharing the port to the specified
+     * value. A value of <code>0</code> starts one instance for each event loop. If
+     * this value does not satisfy the condition <code>0 &lt;= instances</code> no
+     * action is taken. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param serverInstances the new number of server instances.
+     */
+    public void setServerInstances(int serverInstances) {
+        if(serverInstances < 0)
+            return;
+        this.serverInstances = serverInstances;
+    }
+
+    /**
+     * Returns the number of bytes waiting in a client's socket above which the
+     * client is slow.
+     * 
+     * @return the high watermark.
+     */
+    public int getWriteQueueHighWatermark() {
+        return writeQueueHighWatermark;
+    }
+
+    /**
+     * Sets the number of bytes waiting in a client's socket above which the client
+     * is slow to the specified value. If this value does not satisfy the condition
+     * <code>1 &lt;= watermark</code> no action is taken. It is also important to
+     * note that this function has no effect on clients that are already connected.
+     * 
+     * @param writeQueueHighWatermark the new high watermark.
+     */
+    public void setWriteQueueHighWatermark(int writeQueueHighWatermark) {
+        if(writeQueueHighWatermark < 1)
+            return;
+        this.writeQueueHighWatermark = writeQueueHighWatermark;
+    }
+
+    /**
+     * Returns the number of bytes waiting in a client's socket below which a slow
+     * client is no longer slow.
+     * 
+     * @return the low watermark.
+     */
+    public int getWriteQueueLowWatermark() {
+        return writeQueueLowWatermark;
+    }
+
+    /**
+     * Sets the number of bytes waiting in a client's socket below which a slow
+     * client is no longer slow to the specified value. A low watermark above the
+     * high watermark is treated as equal to it. If this value does not satisfy the
+     * condition <code>0 &lt;= watermark</code> no action is taken. It is also
+     * important to note that this function has no effect on clients that are
+     * already connected.
+     * 
+     * @param writeQueueLowWatermark the new low watermark.
+     */
+    public void setWriteQueueLowWatermark(int writeQueueLowWatermark) {
+        if(writeQueueLowWatermark < 0)
+            return;
+        this.writeQueueLowWatermark = writeQueueLowWatermark;
+    }
+
+    /**
+     * Returns the treatment of clients whose sockets cannot keep up.
+     * 
+     * @return the slow client policy.
+     */
+    public SlowClientPolicy getSlowClientPolicy() {
+        return slowClientPolicy;
+    }
+
+    /**
+     * Sets the treatment of clients whose sockets cannot keep up. If the policy
+     * is <code>null</code> no action is taken.
+     * 
+     * @param slowClientPolicy the new slow client policy.
+     */
+    public void setSlowClientPolicy(SlowClientPolicy slowClientPolicy) {
+        if(slowClientPolicy == null)
+            return;
+        this.slowClientPolicy = slowClientPolicy;
+    }
+
+    /**
+     * Returns the number of seconds a client may be slow before it is disconnected
+     * under the <code>DISCONNECT</code> policy.
+     * 
+     * @return the slow client timeout in seconds.
+     */
+    public int getSlowClientTimeout() {
+        return slowClientTimeout;
+    }
+
+    /**
+     * Sets the number of seconds a client may be slow before it is disconnected
+     * under the <code>DISCONNECT</code> policy to the specified value. If this
+     * value does not satisfy the condition <code>0 &lt;= timeout</code> no action
+     * is taken.
+     * 
+     * @param slowClientTimeout the new slow client timeout in seconds.
+     */
+    public void setSlowClientTimeout(int slowClientTimeout) {
+        if(slowClientTimeout < 0)
+            return;
+        this.slowClientTimeout = slowClientTimeout;
+    }
+
+    /**
+     * Returns the multiple of the high watermark above which the bytes waiting to
+     * be sent to a client, in its outbound queue and its socket together, cause it
+     * to be disconnected. This applies under every slow client policy, and is
+     * checked at the end of each tick.
+     * 
+     * @return the write queue limit as a multiple of the high watermark.
+     */
+    public int getWriteQueueLimit() {
+        return writeQueueLimit;
+    }
+
+    /**
+     * Sets the multiple of the high watermark above which the bytes waiting to be
+     * sent to a client cause it to be disconnected to the specified value. If this
+     * value does not satisfy the condition <code>1 &lt;= limit</code> no action is
+     * taken.
+     * 
+     * @param writeQueueLimit the new write queue limit as a multiple of the high
+     * watermark.
+     */
+    public void setWriteQueueLimit(int writeQueueLimit) {
+        if(writeQueueLimit < 1)
+            return;
+        this.writeQueueLimit = writeQueueLimit;
+    }
+
+    /**
+     * Whether or not client assets are served from content-fingerprinted paths,
+     * which browsers may cache indefinitely.
+     * 
+     * @return <code>true</code>, if assets are fingerprinted, <code>false</code> otherwise.
+     */
+    public boolean isFingerprintAssets() {
+        return fingerprintAssets;
+    }
+
+    /**
+     * Sets whether or not client assets are served from content-fingerprinted paths.
+     * 
+     * @param fingerprintAssets whether or not assets are fingerprinted.
+     */
+    public void setFingerprintAssets(boolean fingerprintAssets) {
+        this.fingerprintAssets = fingerprintAssets;
+    }
+
+    /**
+     * Whether or not client assets are packed into a memory-mapped file instead
+     * of being copied into direct memory.
+     * 
+     * @return <code>true</code>, if assets are packed, <code>false</code> otherwise.
+     */
+    public boolean isPackAssets() {
+        return packAssets;
+    }
+
+    /**
+     * Sets whether or not client assets are packed into a memory-mapped file.
+     * 
+     * @param packAssets whether or not assets are packed.
+     */
+    public void setPackAssets(boolean packAssets) {
+        this.packAssets = packAssets;
+    }
+
+    /**
+     * Whether or not comments and redundant whitespace are removed from client
+     * scripts, stylesheets and HTML files when the game is loaded.
+     * 
+     * @return <code>true</code>, if assets are minified, <code>false</code> otherwise.
+     */
+    public boolean isMinifyAssets() {
+        return minifyAssets;
+    }
+
+    /**
+     * Sets whether or not client scripts, stylesheets and HTML files are minified
+     * when the game is loaded. Minification is off by default, so games opt in
+     * once they have checked that their files still work when minified.
+     * 
+     * @param minifyAssets whether or not assets are minified.
+     */
+    public void setMinifyAssets(boolean minifyAssets) {
+        this.minifyAssets = minifyAssets;
+    }
+
+    /**
+     * Whether or not consecutive scripts included by the main HTML file are
+     * bundled into one script when the game is loaded.
+     * 
+     * @return <code>true</code>, if scripts are bundled, <code>false</code> otherwise.
+     */
+    public boolean isBundleScripts() {
+        return bundleScripts;
+    }
+
+    /**
+     * Sets whether or not consecutive scripts included by the main HTML file are
+     * bundled into one script when the game is loaded. Scripts with a directive
+     * prologue such as <code>"use strict"</code> are never bundled. An uncaught
+     * error in a bundled script stops the scripts after it in the same bundle.
+     * 
+     * @param bundleScripts whether or not scripts are bundled.
+     */
+    public void setBundleScripts(boolean bundleScripts) {
+        this.bundleScripts = bundleScripts;
+    }
+
+    /**
+     * Returns the treatment of ticks that take longer than their period.
+     * 
+     * @return the overrun policy.
+     */
+    public OverrunPolicy getOverrunPolicy() {
+        return overrunPolicy;
+    }
+
+    /**
+     * Sets the treatment of ticks that take longer than their period. If the policy
+     * is <code>null</code> no action is taken. It is also important to note that
+     * this function has no effect if it is called after the server starts.
+     * 
+     * @param overrunPolicy the new overrun policy.
+     */
+    public void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+        if(overrunPolicy == null)
+            return;
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * Returns the maximum number of overdue ticks the game loop runs back to back
+     * under the <code>CATCH_UP</code> overrun policy.
+     * 
+     * @return the maximum number of catch-up ticks.
+     */
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    /**
+     * Sets the maximum number of overdue ticks the game loop runs back to back
+     * under the <code>CATCH_UP</code> overrun policy to the specified value. If
+     * this value does not satisfy the condition <code>0 &lt; ticks</code> no
+     * action is taken.
+     * 
+     * @param maxCatchUpTicks the new maximum number of catch-up ticks.
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if(maxCatchUpTicks < 1)
+            return;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Returns the number of microseconds before each tick that the game loop spends
+     * spinning instead of parked, which makes tick times more precise at the cost
+     * of CPU time.
+     * 
+     * @return the spin wait in microseconds.
+     */
+    public int getSpinWaitMicros() {
+        return spinWaitMicros;
+    }
+
+    /**
+     * Sets the number of microseconds before each tick that the game loop spends
+     * spinning instead of parked to the specified value. A value of <code>0</code>
+     * disables spinning. If this value does not satisfy the condition
+     * <code>0 &lt;= micros</code> no action is taken.
+     * 
+     * @param spinWaitMicros the new spin wait in microseconds.
+     */
+    public void setSpinWaitMicros(int spinWaitMicros) {
+        if(spinWaitMicros < 0)
+            return;
+        this.spinWaitMicros = spinWaitMicros;
+    }
+
+    /**
+     * Whether or not HTTP/2 cleartext (h2c) is served alongside HTTP/1.1 on the
+     * HTTP server port.
+     * 
+     * @return <code>true</code>, if h2c is enabled, <code>false</code> otherwise.
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * Sets whether or not HTTP/2 cleartext (h2c) is served alongside HTTP/1.1 on
+     * the HTTP server port. It is also important to note that this function has
+     * no effect if it is called after the server starts.
+     * 
+     * @param http2 whether or not h2c is enabled.
+     */
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * Returns the maximum number of concurrent HTTP/2 streams on a connection.
+     * 
+     * @return the maximum number of concurrent streams.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    /**
+     * Sets the maximum number of concurrent HTTP/2 streams on a connection to the
+     * specified value. If this value does not satisfy the condition
+     * <code>1 &lt;= streams</code> no action is taken.
+     * 
+     * @param http2MaxConcurrentStreams the new maximum number of concurrent streams.
+     */
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        if(http2MaxConcurrentStreams < 1)
+            return;
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    /**
+     * Returns the initial flow control window of each HTTP/2 stream.
+     * 
+     * @return the initial window size in bytes.
+     */
+    public int getHttp2InitialWindowSize() {
+        return http2InitialWindowSize;
+    }
+
+    /**
+     * Sets the initial flow control window of each HTTP/2 stream to the specified
+     * value. If this value does not satisfy the condition <code>0 &lt;= size</code>
+     * no action is taken.
+     * 
+     * @param http2InitialWindowSize the new initial window size in bytes.
+     */
+    public void setHttp2InitialWindowSize(int http2InitialWindowSize) {
+        if(http2InitialWindowSize < 0)
+            return;
+        this.http2InitialWindowSize = http2InitialWindowSize;
+    }
+
+    /**
+     * Returns the flow control window of each HTTP/2 connection, which is shared
+     * by all of its streams.
+     * 
+     * @return the connection window size in bytes.
+     */
+    public int getHttp2ConnectionWindowSize() {
+        return http2ConnectionWindowSize;
+    }
+
+    /**
+     * Sets the flow control window of each HTTP/2 connection to the specified
+     * value. If this value does not satisfy the condition <code>0 &lt; size</code>
+     * no action is taken.
+     * 
+     * @param http2ConnectionWindowSize the new connection window size in bytes.
+     */
+    public void setHttp2ConnectionWindowSize(int http2ConnectionWindowSize) {
+        if(http2ConnectionWindowSize <= 0)
+            return;
+        this.http2ConnectionWindowSize = http2ConnectionWindowSize;
+    }
+
+    /**
+     * Whether or not metrics are served in the Prometheus text format on the HTTP
+     * server port.
+     * 
+     * @return <code>true</code>, if metrics are served, <code>false</code> otherwise.
+     */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets whether or not metrics are served in the Prometheus text format on the
+     * HTTP server port. It is also important to note that this function has no
+     * effect if it is called after the server starts.
+     * 
+     * @param metrics whether or not metrics are served.
+     */
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the HTTP path metrics are served on.
+     * 
+     * @return the metrics path.
+     */
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    /**
+     * Sets the HTTP path metrics are served on to the specified value. If this
+     * value does not start with <code>/</code> no action is taken. The path takes
+     * precedence over any client file with the same path.
+     * 
+     * @param metricsPath the new metrics path.
+     */
+    public void setMetricsPath(String metricsPath) {
+        if(metricsPath == null || !metricsPath.startsWith("/"))
+            return;
+        this.metricsPath = metricsPath;
+    }
 }
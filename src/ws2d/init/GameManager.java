@@ -8,6 +8,8 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import stg.generic.Minifier;
@@ -15,6 +17,7 @@ import stg.generic.Pair;
 import stg.json.JsonFormatException;
 import stg.json.JsonObject;
 import stg.reflect.ReflectionHelper;
+import ws2d.core.server.AssetCache;
 import ws2d.init.reflect.Init;
 import ws2d.init.reflect.OnEnd;
 import ws2d.init.reflect.OnStart;
@@ -55,6 +58,10 @@ public class GameManager {
      * Whether or not the game is running.
      */
     private boolean isGameRunning;
+    /**
+     * The client files of the game.
+     */
+    private AssetCache assetCache;
     
     /**
      * The manager's logger.
@@ -65,13 +72,19 @@ public class GameManager {
      */
     private static final Logger LOG = new Logger("GAME");
     /**
-     * The required tags for the game's JSON data file.
+     * The prefix of the file the client files are packed into. Each process packs
+     * into its own file, since another server running from the same directory may
+     * still have its pack mapped.
      */
-    private static final String[] REQUIRED_GAME_DATA_TAGS = {"clientDir", "mainHTML", "main", "name"};
+    private static final String ASSET_PACK_PREFIX = ".ws2d-assets-";
     /**
-     * The directory for caching requested web files.
+     * The directory for caching minified and bundled client files.
      */
-    private static final String WEB_CACHE = ".ws2d-webcache";
+    private static final String ASSET_CACHE = ".ws2d-assetcache";
+    /**
+     * The required tags for the game's JSON data file.
+     */
+    private static final String[] REQUIRED_GAME_DATA_TAGS = {"clientDir", "mainHTML", "main", "name"};
     
     /**
      * Loads and checks the validity of the game jar.
@@ -108,6 +121,14 @@ public class GameManager {
             }else
                 config = new Config(null);
             
+            if(config.getCompressionDictionaryPath() != null) {
+                ZipEntry dictionary = jar.getEntry(config.getCompressionDictionaryPath());
+                if(dictionary == null)
+                    LOG0.warn("Could not find the compression dictionary in the game jar file. Compressing without it.");
+                else
+                    config.setCompressionDictionary(FileSystem.readAll(jar.getInputStream(dictionary)));
+            }
+            
             if(jar.getEntry(gameData.getString("clientDir") + "/" + gameData.getString("mainHTML")) == null) {
                 LOG0.error("Failed to find main HTML file in client folder.");
                 ErrorCodes.INVALID_GAME_FILE.fail();
@@ -122,10 +143,19 @@ public class GameManager {
                 ErrorCodes.INVALID_GAME_FILE.fail();
             }
             
-            File webCacheDir = new File(WEB_CACHE);
-            if(webCacheDir.exists())
-                FileSystem.delete(webCacheDir);
-            webCacheDir.mkdirs();
+            File pack = config.isPackAssets() ? Files.createTempFile(Paths.get(""), ASSET_PACK_PREFIX, ".pack").toFile() : null;
+            try {
+                assetCache = AssetCache.load(jar, gameData.getString("clientDir"), gameData.getString("mainHTML"), config, pack, new File(ASSET_CACHE));
+            }catch(IOException ex) {
+                if(pack != null)
+                    pack.delete();
+                throw ex;
+            }
+            LOG0.info("Loaded " + assetCache.getAssets().size() + " client files (" + (assetCache.getMemorySize() / 1024) + " KB).");
+            if(pack != null) {
+                pack.deleteOnExit();
+                LOG0.info("Packed client files into " + pack.getName() + " (" + (assetCache.getPack().size() / 1024) + " KB).");
+            }
         }catch(JsonFormatException jfe) {
             LOG0.error("Invalid game.json file. Required object with fields " + String.join(", ", REQUIRED_GAME_DATA_TAGS));
             ErrorCodes.INVALID_GAME_FILE.fail();
@@ -149,6 +179,7 @@ public class GameManager {
         this.gameData = new JsonObject();
         this.gameObject = null;
         this.isGameRunning = false;
+        this.assetCache = null;
         try {
             this.classLoader = new URLClassLoader(new URL[] {file.toURI().toURL()});
         }catch(MalformedURLException ex) {
@@ -175,27 +206,13 @@ public class GameManager {
     }
     
     /**
-     * Gets a given web file for a client, and caches that file if needed.
+     * Returns the client files of the game, which are loaded into memory when the
+     * game jar is loaded.
      * 
-     * @param request the file requested.
-     * @return the requested web file path, or null if that file does not exist.
+     * @return the asset cache.
      */
-    public String getClientFile(String request) {
-        request = request.substring(1);
-        File cached = new File(WEB_CACHE + File.separator + request);
-        if(!cached.exists()) {
-            try {
-                ZipEntry ze = jar.getEntry(gameData.getString("clientDir") + "/" + request);
-                if(ze == null)
-                    return null;
-                FileSystem.copy(jar.getInputStream(ze), cached);
-            }catch(IOException ex) {
-                LOG.warn("Encountered exception while trying to cache web file.");
-                ex.printStackTrace(System.out);
-                return null;
-            }
-        }
-        return cached.getAbsolutePath();
+    public AssetCache getAssetCache() {
+        return assetCache;
     }
     
     /**
@@ -244,7 +261,8 @@ public class GameManager {
         tryInvoke(OnEnd.class);
         try {
             jar.close();
-            FileSystem.delete(new File(WEB_CACHE));
+            if(assetCache != null && assetCache.getPack() != null)
+                assetCache.getPack().getFile().delete();
         }catch(IOException ex) {
             LOG.warn("Failed to close game jar file.", ex);
         }
@@ -1,9 +1,12 @@
 package ws2d.init;
 
 import ws2d.core.command.Command;
+import ws2d.core.network.AsyncPacketHandler;
 import ws2d.core.network.Packet;
 import ws2d.core.network.PacketData;
+import ws2d.core.network.PacketDispatcher;
 import ws2d.core.network.PacketHandler;
+import ws2d.core.network.PacketOptions;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -24,6 +27,10 @@ public class Registry {
      * The registered commands.
      */
     private final List<Command> commands;
+    /**
+     * The packet dispatcher, which is <code>null</code> until the registry is frozen.
+     */
+    private volatile PacketDispatcher dispatcher;
     
     /**
      * Constructs a new instance of <code>Registry</code>.
@@ -31,17 +38,76 @@ public class Registry {
     Registry() {
         this.packets = new ArrayList<>();
         this.commands = new ArrayList<>();
+        this.dispatcher = null;
     }
     
     /**
-     * Registers a new packet.
+     * Registers a new packet. Packets can only be registered until the end of
+     * initialization, after which the registry is frozen.
      * 
      * @param packetClass the packet's class.
      * @param handler the packet's handler.
      * @param <T> the packet type.
      */
     public <T extends Packet> void registerPacket(Class<T> packetClass, PacketHandler<T> handler) {
+        registerPacket(packetClass, handler, PacketOptions.defaults());
+    }
+    
+    /**
+     * Registers a new packet with the specified options. Packets can only be
+     * registered until the end of initialization, after which the registry is
+     * frozen.
+     * 
+     * @param packetClass the packet's class.
+     * @param handler the packet's handler.
+     * @param options the packet's options.
+     * @param <T> the packet type.
+     */
+    public <T extends Packet> void registerPacket(Class<T> packetClass, PacketHandler<T> handler, PacketOptions options) {
+        checkPacket(packetClass, options);
+        packets.add(new PacketData<>((Class<Packet>)packetClass, (PacketHandler<Packet>)handler, packets.size(), options));
+    }
+    
+    /**
+     * Registers a new packet with an asynchronous handler. Packets can only be
+     * registered until the end of initialization, after which the registry is
+     * frozen.
+     * 
+     * @param packetClass the packet's class.
+     * @param handler the packet's asynchronous handler.
+     * @param <T> the packet type.
+     */
+    public <T extends Packet> void registerAsyncPacket(Class<T> packetClass, AsyncPacketHandler<T> handler) {
+        registerAsyncPacket(packetClass, handler, PacketOptions.defaults());
+    }
+    
+    /**
+     * Registers a new packet with an asynchronous handler and the specified options.
+     * Packets can only be registered until the end of initialization, after which
+     * the registry is frozen.
+     * 
+     * @param packetClass the packet's class.
+     * @param handler the packet's asynchronous handler.
+     * @param options the packet's options.
+     * @param <T> the packet type.
+     */
+    public <T extends Packet> void registerAsyncPacket(Class<T> packetClass, AsyncPacketHandler<T> handler, PacketOptions options) {
+        Objects.requireNonNull(handler, "The specified packet handler cannot be null.");
+        checkPacket(packetClass, options);
+        packets.add(new PacketData<>((Class<Packet>)packetClass, (AsyncPacketHandler<Packet>)handler, packets.size(), options));
+    }
+    
+    /**
+     * Checks that a packet can be registered.
+     * 
+     * @param packetClass the packet's class.
+     * @param options the packet's options.
+     */
+    private void checkPacket(Class<?> packetClass, PacketOptions options) {
         Objects.requireNonNull(packetClass, "The specified packet class cannot be null.");
+        Objects.requireNonNull(options, "The specified packet options cannot be null.");
+        if(dispatcher != null)
+            throw new IllegalStateException("Packets cannot be registered after initialization.");
         packets.stream().map((pd) -> {
             if(packetClass.equals(pd.packetClass))
                 throw new IllegalArgumentException("This packet class has already been registered.");
@@ -49,9 +115,6 @@ public class Registry {
         }).filter((pd) -> (pd.id == packets.size())).forEachOrdered((_item) -> {
             throw new InternalError("A duplicate packet ID was found. This error should never happen, please report this to the maintainers of this build.");
         });
-        if(packets.size() == 0x100)
-            throw new RuntimeException("The number of available packet slots has been exceeded: 256.");
-        packets.add(new PacketData<>((Class<Packet>)packetClass, (PacketHandler<Packet>)handler, packets.size()));
     }
     
     /**
@@ -63,6 +126,30 @@ public class Registry {
         return Collections.unmodifiableList(packets);
     }
     
+    /**
+     * Freezes the registered packets into a packet dispatcher. This is called once
+     * initialization has finished.
+     * 
+     * @param config the configuration of this Ws2D instance.
+     */
+    void freeze(Config config) {
+        if(dispatcher == null)
+            dispatcher = new PacketDispatcher(packets, config.isDebugPacketPools());
+    }
+    
+    /**
+     * Returns the packet dispatcher built from the registered packets.
+     * 
+     * @return the packet dispatcher.
+     * @throws IllegalStateException if the registry has not been frozen yet.
+     */
+    public PacketDispatcher getDispatcher() {
+        PacketDispatcher pd = dispatcher;
+        if(pd == null)
+            throw new IllegalStateException("The packet dispatcher is not available until initialization has finished.");
+        return pd;
+    }
+    
     /**
      * Registers a new command.
      * 
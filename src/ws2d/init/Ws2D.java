@@ -2,9 +2,16 @@ package ws2d.init;
 
 import java.io.File;
 import ws2d.core.command.CommandHandler;
+import ws2d.core.command.CommandConnections;
 import ws2d.core.command.CommandStop;
+import ws2d.core.command.CommandTps;
+import ws2d.core.network.packet.BPacketBundle;
+import ws2d.core.network.packet.BPacketCompressed;
+import ws2d.core.network.packet.CPacketSnapshotAck;
+import ws2d.core.network.packet.SPacketSnapshot;
 import ws2d.core.network.packet.BPacketHeartbeat;
 import ws2d.core.network.packet.SPacketClientUid;
+import ws2d.core.network.PacketOptions;
 import ws2d.core.server.Server;
 
 /**
@@ -73,6 +80,7 @@ public final class Ws2D {
         init();
         initState = InitializationState.POST_INIT;
         postInit();
+        registry.freeze(config);
         initState = InitializationState.FINISHED;
         start();
     }
@@ -176,6 +184,8 @@ public final class Ws2D {
         
         /* Command Stuff */
         r.registerCommand(new CommandStop());
+        r.registerCommand(new CommandConnections());
+        r.registerCommand(new CommandTps());
         
         /* Network Stuff */
         r.registerPacket(BPacketHeartbeat.class, (server, client, packet) -> {
@@ -183,5 +193,16 @@ public final class Ws2D {
             return null;
         });
         r.registerPacket(SPacketClientUid.class, null);
+        r.registerPacket(BPacketBundle.class, null);
+        r.registerPacket(BPacketCompressed.class, null);
+        r.registerPacket(SPacketSnapshot.class, null);
+        r.registerPacket(CPacketSnapshotAck.class, (server, client, packet) -> {
+            int sequence = packet.getSequence();
+            if(sequence < 0)
+                client.getReplicationState().resync();
+            else if(sequence <= server.getReplicationManager().getSequence())
+                client.getReplicationState().acknowledge(sequence);
+            return null;
+        }, new PacketOptions().pooled());
     }
 }
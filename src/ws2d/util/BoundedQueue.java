@@ -0,0 +1,138 @@
+package ws2d.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed capacity first-in-first-out queue which supports any number
+ * of concurrent producers and consumers. Each slot carries a sequence number that
+ * tells producers and consumers whether it is free to write or ready to read, so
+ * no operation ever blocks or allocates.
+ * 
+ * @author Ian
+ * @param <T> the type of element stored in the queue.
+ */
+public class BoundedQueue<T> {
+    /**
+     * The elements.
+     */
+    private final Object[] data;
+    /**
+     * The sequence number of each slot.
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * The mask used to convert a position into a slot index.
+     */
+    private final int mask;
+    /**
+     * The position of the next element to be added.
+     */
+    private final AtomicLong tail;
+    /**
+     * The position of the next element to be removed.
+     */
+    private final AtomicLong head;
+    
+    /**
+     * Constructs a new instance of <code>BoundedQueue</code> with a specified capacity.
+     * The capacity is rounded up to the nearest power of two.
+     * 
+     * @param capacity the minimum capacity.
+     */
+    public BoundedQueue(int capacity) {
+        if(capacity < 1 || capacity > 0x40000000)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity)
+            size <<= 1;
+        this.data = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0;i < size;++ i)
+            sequences.lazySet(i, i);
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+    }
+    
+    /**
+     * Adds an element to the end of the queue if there is room for it.
+     * 
+     * @param object the element to add.
+     * @return <code>true</code>, if the element was added, <code>false</code> if
+     * the queue is full.
+     */
+    public boolean offer(T object) {
+        long pos = tail.get();
+        for(;;) {
+            int index = (int)pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(diff == 0) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    data[index] = object;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }else if(diff < 0)
+                return false;
+            else
+                pos = tail.get();
+        }
+    }
+    
+    /**
+     * Removes the element at the front of the queue.
+     * 
+     * @return the element that was removed, or <code>null</code> if the queue is
+     * empty.
+     */
+    public T poll() {
+        long pos = head.get();
+        for(;;) {
+            int index = (int)pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if(diff == 0) {
+                if(head.compareAndSet(pos, pos + 1)) {
+                    T object = (T)data[index];
+                    data[index] = null;
+                    sequences.set(index, pos + mask + 1);
+                    return object;
+                }
+                pos = head.get();
+            }else if(diff < 0)
+                return null;
+            else
+                pos = head.get();
+        }
+    }
+    
+    /**
+     * Returns the number of elements in the queue. The result is only an estimate
+     * while other threads are modifying the queue.
+     * 
+     * @return the number of elements in the queue.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int)Math.max(0, Math.min(size, data.length));
+    }
+    
+    /**
+     * Whether or not the queue is empty.
+     * 
+     * @return <code>true</code>, if the queue is empty, <code>false</code> otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Returns the capacity of the queue.
+     * 
+     * @return the capacity of the queue.
+     */
+    public int capacity() {
+        return data.length;
+    }
+}
@@ -1,5 +1,6 @@
 package ws2d.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -132,6 +133,23 @@ public final class FileSystem {
         ofstream.close();
     }
     
+    /**
+     * Reads all of the remaining data in an input stream and closes the stream.
+     * 
+     * @param source the source stream.
+     * @return the data that was read.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static byte[] readAll(InputStream source) throws IOException {
+        ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while((len = source.read(buffer)) > 0)
+            ostream.write(buffer, 0, len);
+        source.close();
+        return ostream.toByteArray();
+    }
+    
     /**
      * Directs the data in an input stream through a buffer with a size of <code>65536</code>
      * to the specified destination file.
@@ -0,0 +1,174 @@
+package ws2d.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with a fixed relative precision, in the
+ * style of an HDR histogram. Values below <code>32</code> are counted exactly,
+ * and every larger power of two is split into <code>32</code> equal buckets, so
+ * any recorded value is reported within about three percent. Recording never
+ * allocates and takes constant time.
+ * <p>
+ * A histogram has a single writer, which is the only thread that may record values
+ * or reset it. Any other thread may read it while it is being written, and sees
+ * a slightly stale but consistent enough view.
+ * 
+ * @author Ian
+ */
+public final class LatencyHistogram {
+    /**
+     * The number of bits of precision below the highest bit of a value.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The largest value that is counted precisely. Larger values are counted as
+     * this value, which is about 18 minutes.
+     */
+    private static final long MAX_TRACKABLE = (1L << 40) - 1;
+    
+    /**
+     * The count of values in each bucket.
+     */
+    private final AtomicLongArray counts;
+    /**
+     * The number of recorded values.
+     */
+    private volatile long count;
+    /**
+     * The sum of the recorded values.
+     */
+    private volatile long sum;
+    /**
+     * The largest recorded value.
+     */
+    private volatile long max;
+    
+    /**
+     * Constructs a new instance of <code>LatencyHistogram</code> with no values.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(index(MAX_TRACKABLE) + 1);
+        this.count = 0;
+        this.sum = 0;
+        this.max = 0;
+    }
+    
+    /**
+     * Records a value. Negative values are recorded as <code>0</code>.
+     * 
+     * @param value the value in nanoseconds.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        int index = index(Math.min(value, MAX_TRACKABLE));
+        counts.lazySet(index, counts.get(index) + 1);
+        sum += value;
+        if(value > max)
+            max = value;
+        ++ count;
+    }
+    
+    /**
+     * Removes every recorded value.
+     */
+    public void reset() {
+        for(int i = 0;i < counts.length();++ i)
+            counts.lazySet(i, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return the sum in nanoseconds.
+     */
+    public long getSum() {
+        return sum;
+    }
+    
+    /**
+     * Returns the largest recorded value.
+     * 
+     * @return the largest value in nanoseconds, or <code>0</code> if there are none.
+     */
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return the mean in nanoseconds, or <code>0</code> if there are none.
+     */
+    public double getMean() {
+        long n = count;
+        return n == 0 ? 0 : (double)sum / n;
+    }
+    
+    /**
+     * Returns the value below which the specified percentage of the recorded values
+     * fall. The result is the largest value of the bucket holding the percentile,
+     * and never more than the largest recorded value.
+     * 
+     * @param percentile the percentile, from <code>0</code> to <code>100</code>.
+     * @return the value at the percentile in nanoseconds, or <code>0</code> if
+     * there are no values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for(int i = 0;i < counts.length();++ i)
+            total += counts.get(i);
+        if(total == 0)
+            return 0;
+        long target = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for(int i = 0;i < counts.length();++ i) {
+            seen += counts.get(i);
+            if(seen >= target)
+                return Math.min(highestEquivalent(i), max);
+        }
+        return max;
+    }
+    
+    /**
+     * Returns the index of the bucket counting a value.
+     * 
+     * @param value the value, which is not negative.
+     * @return the bucket index.
+     */
+    private static int index(long value) {
+        if(value < SUB_BUCKETS)
+            return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int)(value >>> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Returns the largest value counted by a bucket.
+     * 
+     * @param index the bucket index.
+     * @return the largest value of the bucket.
+     */
+    private static long highestEquivalent(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,75 @@
+package ws2d.util;
+
+/**
+ * A token bucket rate limiter. The bucket holds up to a fixed number of tokens
+ * and is refilled at a constant rate, so it allows short bursts while limiting
+ * the long term rate. This class is not thread safe.
+ * 
+ * @author Ian
+ */
+public final class TokenBucket {
+    /**
+     * The number of tokens added per nanosecond.
+     */
+    private final double rate;
+    /**
+     * The maximum number of tokens.
+     */
+    private final double capacity;
+    /**
+     * The current number of tokens.
+     */
+    private double tokens;
+    /**
+     * The time of the last refill, from <code>System.nanoTime</code>.
+     */
+    private long lastRefill;
+    
+    /**
+     * Constructs a new instance of <code>TokenBucket</code> that starts full.
+     * 
+     * @param perSecond the number of tokens added per second.
+     * @param capacity the maximum number of tokens.
+     */
+    public TokenBucket(double perSecond, double capacity) {
+        if(perSecond <= 0 || capacity < 1)
+            throw new IllegalArgumentException("Invalid token bucket: " + perSecond + "/s, capacity " + capacity);
+        this.rate = perSecond / 1e9;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+    
+    /**
+     * Takes a token from the bucket if one is available.
+     * 
+     * @return <code>true</code>, if a token was taken, <code>false</code> if the
+     * bucket is empty.
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+    
+    /**
+     * Takes a token from the bucket if one is available at the specified time.
+     * 
+     * @param now the current time, from <code>System.nanoTime</code>.
+     * @return <code>true</code>, if a token was taken, <code>false</code> if the
+     * bucket is empty.
+     */
+    public boolean tryAcquire(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * rate);
+        lastRefill = now;
+        if(tokens < 1)
+            return false;
+        -- tokens;
+        return true;
+    }
+    
+    /**
+     * Returns a token that was taken but not used to the bucket.
+     */
+    public void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+}
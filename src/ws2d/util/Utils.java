@@ -1,6 +1,5 @@
 package ws2d.util;
 
-import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.buffer.impl.BufferFactoryImpl;
 import io.vertx.core.net.SocketAddress;
@@ -13,11 +12,6 @@ import java.util.List;
  * @author Ian
  */
 public final class Utils {
-    /**
-     * The vert.x instance.
-     */
-    public static final Vertx VERTX = Vertx.vertx();
-    
     /**
      * Private as it has no use.
      */